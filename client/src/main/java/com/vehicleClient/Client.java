@@ -1,23 +1,30 @@
 package com.vehicleClient;
 
 import com.vehicleShared.model.*;
-import com.vehicleShared.network.Request;
-import com.vehicleShared.network.Response;
+import com.vehicleShared.network.*;
 
 import java.io.*;
 import java.net.InetSocketAddress;
-import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.vehicleShared.managers.CollectionManager.requestVehicleInformation;
 
 public class Client {
+    private static final int RESPONSE_TIMEOUT_SECONDS = Integer.getInteger("client.response.timeout", 60);
+    // скрипт с его пакетными вставками ждём без таймаута, сколько бы ни работал сервер
+    private static final Set<String> UNBOUNDED_COMMANDS = Set.of("execute_script");
     private final String serverAddress;
     private final int serverPort;
     private String currentLogin;
-    private String currentPassword;
+    private String sessionToken;
+    private WireCodec codec = SerializationCodec.INSTANCE;
 
     public Client(String serverAddress, int serverPort) {
         this.serverAddress = serverAddress;
@@ -25,8 +32,7 @@ public class Client {
     }
 
     public void start() {
-        try (SocketChannel socketChannel = SocketChannel.open()) {
-            socketChannel.connect(new InetSocketAddress(serverAddress, serverPort));
+        try (RequestPipeline pipeline = new RequestPipeline(connect(), codec)) {
             Scanner scanner = new Scanner(System.in);
             System.out.print("Введите login/register/exit: ");
             while (true) {
@@ -40,12 +46,12 @@ public class Client {
                     System.out.print("Пароль: ");
                     String password = scanner.nextLine().trim();
                     Request request = new Request(command, null, login, password);
-                    Response response = sendRequest(socketChannel, request);
+                    Response response = sendRequest(pipeline, request);
                     System.out.println("Ответ сервера: " + response.getMessage());
                     if (response.isSuccess() && command.equals("login")) {
                         currentLogin = login;
-                        currentPassword = password;
-                        handleAuthenticatedCommands(scanner, socketChannel);
+                        sessionToken = response.getSessionToken();
+                        handleAuthenticatedCommands(scanner, pipeline);
                     }
                 } else {
                     System.out.println("Ответ сервера: используйте login или register");
@@ -57,11 +63,33 @@ public class Client {
         }
     }
 
-    private void handleAuthenticatedCommands(Scanner scanner, SocketChannel socketChannel) {
+    private SocketChannel connect() throws IOException {
+        SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(serverAddress, serverPort));
+        try {
+            WireBuffer hello = new WireBuffer(16).startFrame();
+            Protocol.writeHello(hello);
+            RequestPipeline.writeFrame(socketChannel, hello.finishFrame());
+            ByteBuffer reply = RequestPipeline.readFrame(socketChannel);
+            byte version = Protocol.readAccept(reply);
+            if (version >= 0) {
+                codec = Protocol.codecFor(version, Protocol.readAcceptedFeatures(reply));
+                return socketChannel;
+            }
+        } catch (IOException ignored) {
+        }
+        // старый сервер не понимает согласование и закрывает соединение
+        socketChannel.close();
+        codec = SerializationCodec.INSTANCE;
+        return SocketChannel.open(new InetSocketAddress(serverAddress, serverPort));
+    }
+
+    private void handleAuthenticatedCommands(Scanner scanner, RequestPipeline pipeline) {
         System.out.print("Введите команду: ");
         while (true) {
             String input = scanner.nextLine().trim();
             if (input.equals("exit")) {
+                sendRequest(pipeline, newRequest("logout", null));
+                sessionToken = null;
                 System.out.print("Введите login/register/exit: ");
                 break;
             }
@@ -79,70 +107,80 @@ public class Client {
             } else if (command.equals("insert")) {
                 vehicle = requestVehicleInformation(scanner);
             }
-            Request request = new Request(command, argument, currentLogin, currentPassword);
+            Request request = newRequest(command, argument);
             request.setVehicle(vehicle);
-            Response response = sendRequest(socketChannel, request);
-            System.out.println("Ответ сервера: " + response.getMessage());
+            printPages(pipeline, request);
             System.out.print("Введите команду: ");
         }
     }
 
-    private Response sendRequest(SocketChannel socketChannel, Request request) {
-        try {
-            if (!socketChannel.isOpen() || !socketChannel.isConnected()) {
-                return Response.error("канал закрыт");
+    /**
+     * Печатает ответ по мере прихода страниц: следующая запрашивается сразу, как известен
+     * её курсор, и едет по сети, пока печатается текущая.
+     */
+    private void printPages(RequestPipeline pipeline, Request request) {
+        Response response = sendRequest(pipeline, request);
+        while (response.isSuccess() && response.getData() != null) {
+            CompletableFuture<Response> next = null;
+            Request nextRequest = null;
+            if (response.getNextCursor() != null) {
+                nextRequest = newRequest(request.getCommand(), request.getArgument());
+                nextRequest.setCursor(response.getNextCursor());
+                next = submit(pipeline, nextRequest);
             }
-            socketChannel.socket().setSoTimeout(5000);
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
-                oos.writeObject(request);
+            for (Serializable item : response.getData()) {
+                System.out.println(item instanceof Vehicle ? ((Vehicle) item).getId() + " : " + item : item);
             }
-            byte[] data = baos.toByteArray();
-            ByteBuffer buffer = ByteBuffer.allocate(4 + data.length);
-            buffer.putInt(data.length);
-            buffer.put(data);
-            buffer.flip();
-            while (buffer.hasRemaining()) {
-                socketChannel.write(buffer);
+            if (next == null) {
+                return;
             }
+            response = await(pipeline, nextRequest, next);
+        }
+        System.out.println("Ответ сервера: " + response.getMessage());
+    }
 
-            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
-            int totalBytesRead = 0;
-            while (totalBytesRead < 4) {
-                int bytesRead = socketChannel.read(lengthBuffer);
-                if (bytesRead == -1) {
-                    return Response.error("сервер отключился");
-                }
-                totalBytesRead += bytesRead;
-            }
-            lengthBuffer.flip();
-            int length = lengthBuffer.getInt();
-            if (length <= 0 || length > 1_000_000) {
-                return Response.error("некорректная длина ответа");
-            }
+    // пароль уходит только при входе, дальше команды подписываются токеном сессии
+    private Request newRequest(String command, String argument) {
+        Request request = new Request(command, argument, currentLogin, null);
+        request.setSessionToken(sessionToken);
+        return request;
+    }
 
-            ByteBuffer dataBuffer = ByteBuffer.allocate(length);
-            totalBytesRead = 0;
-            while (totalBytesRead < length) {
-                int bytesRead = socketChannel.read(dataBuffer);
-                if (bytesRead == -1) {
-                    return Response.error("сервер отключился");
-                }
-                totalBytesRead += bytesRead;
-            }
-            dataBuffer.flip();
-            byte[] responseData = new byte[length];
-            dataBuffer.get(responseData);
+    private Response sendRequest(RequestPipeline pipeline, Request request) {
+        return await(pipeline, request, submit(pipeline, request));
+    }
+
+    private CompletableFuture<Response> submit(RequestPipeline pipeline, Request request) {
+        try {
+            return pipeline.submit(request);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(responseData);
-                 ObjectInputStream ois = new ObjectInputStream(bais)) {
-                return (Response) ois.readObject();
+    private Response await(RequestPipeline pipeline, Request request, CompletableFuture<Response> future) {
+        try {
+            if (RESPONSE_TIMEOUT_SECONDS <= 0 || UNBOUNDED_COMMANDS.contains(request.getCommand())) {
+                return future.get();
             }
-        } catch (SocketTimeoutException e) {
+            return future.get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            pipeline.abandon(request.getCorrelationId());
             return Response.error("таймаут связи");
-        } catch (IOException | ClassNotFoundException e) {
-            return Response.error("ошибка связи: " + e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EOFException) {
+                return Response.error("сервер отключился");
+            }
+            if (e.getCause() instanceof InterruptedException) {
+                return Response.error("ожидание ответа прервано");
+            }
+            return Response.error("ошибка связи: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.error("ожидание ответа прервано");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package com.vehicleClient;
+
+import com.vehicleShared.network.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный прогон для сравнения транспортов сервера: несколько соединений шлют
+ * конвейером одну и ту же команду и меряют пропускную способность и задержки.
+ * <p>
+ * Запуск: {@code LoadTest [host] [port] [соединений] [запросов на соединение] [команда]},
+ * по умолчанию команда {@code help}, которая не требует авторизации и базы.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6969;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        String command = args.length > 4 ? args[4] : "help";
+
+        long[] latencies = new long[connections * requests];
+        AtomicLong failures = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int offset = c * requests;
+            Thread thread = new Thread(() -> {
+                try (RequestPipeline pipeline = open(host, port)) {
+                    List<CompletableFuture<Void>> inFlight = new ArrayList<>(requests);
+                    for (int i = 0; i < requests; i++) {
+                        int slot = offset + i;
+                        long sent = System.nanoTime();
+                        inFlight.add(pipeline.submit(new Request(command, null, null, null)).thenAccept(response -> {
+                            latencies[slot] = System.nanoTime() - sent;
+                            if (!response.isSuccess()) {
+                                failures.incrementAndGet();
+                            }
+                        }));
+                    }
+                    CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).join();
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    System.out.println("ошибка соединения: " + e.getMessage());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("запросов: %d за %.2f с, %.0f запросов/с, ошибок: %d%n",
+                latencies.length, seconds, latencies.length / seconds, failures.get());
+        System.out.printf("задержка, мс: p50=%.2f p99=%.2f max=%.2f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static RequestPipeline open(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        WireBuffer hello = new WireBuffer(16).startFrame();
+        Protocol.writeHello(hello);
+        RequestPipeline.writeFrame(channel, hello.finishFrame());
+        ByteBuffer reply = RequestPipeline.readFrame(channel);
+        byte version = Protocol.readAccept(reply);
+        if (version < 0) {
+            return new RequestPipeline(channel, SerializationCodec.INSTANCE);
+        }
+        return new RequestPipeline(channel, Protocol.codecFor(version, Protocol.readAcceptedFeatures(reply)));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1e6;
+    }
+}
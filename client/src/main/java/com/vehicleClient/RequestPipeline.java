@@ -0,0 +1,181 @@
+package com.vehicleClient;
+
+import com.vehicleShared.network.*;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Конвейер запросов по одному соединению: запросы уходят, не дожидаясь ответов на
+ * предыдущие, а ответы сопоставляются с запросами по correlationId в отдельном потоке.
+ */
+public class RequestPipeline implements Closeable {
+    // с запасом до лимита сервера на соединение: слот на сервере освобождается чуть позже, чем приходит ответ
+    public static final int DEFAULT_WINDOW = 8;
+    private final SocketChannel channel;
+    private final WireCodec codec;
+    private final Semaphore window;
+    private final Map<Long, CompletableFuture<Response>> pending = new LinkedHashMap<>();
+    // брошенные по таймауту: поздний ответ на них просто отбрасывается
+    private final Set<Long> abandoned = new LinkedHashSet<>();
+    private final Object writeLock = new Object();
+    private long nextCorrelationId;
+    private volatile IOException failure;
+
+    /**
+     * @param window сколько запросов может ждать ответа одновременно; больше лимита сервера на соединение
+     *               ставить нет смысла, лишние запросы он отклонит
+     */
+    public RequestPipeline(SocketChannel channel, WireCodec codec, int window) {
+        this.channel = channel;
+        this.codec = codec;
+        this.window = new Semaphore(window);
+        Thread reader = new Thread(this::readLoop, "response-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public RequestPipeline(SocketChannel channel, WireCodec codec) {
+        this(channel, codec, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Отправляет запрос и сразу возвращает ожидание ответа. Блокируется, только если окно заполнено.
+     */
+    public CompletableFuture<Response> submit(Request request) throws IOException, InterruptedException {
+        window.acquire();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        try {
+            synchronized (writeLock) {
+                synchronized (pending) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    request.setCorrelationId(++nextCorrelationId);
+                    pending.put(request.getCorrelationId(), future);
+                }
+                WireBuffer out = new WireBuffer().startFrame();
+                codec.writeRequest(request, out);
+                writeFrame(channel, out.finishFrame());
+            }
+        } catch (IOException e) {
+            synchronized (pending) {
+                pending.remove(request.getCorrelationId());
+            }
+            window.release();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Перестаёт ждать ответа: запрос уходит из ожидающих и освобождает место в окне.
+     */
+    public void abandon(long correlationId) {
+        synchronized (pending) {
+            if (pending.remove(correlationId) != null) {
+                abandoned.add(correlationId);
+                window.release();
+            }
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                Response response = codec.readResponse(readFrame(channel));
+                CompletableFuture<Response> future = take(response.getCorrelationId());
+                if (future != null) {
+                    window.release();
+                    future.complete(response);
+                }
+            }
+        } catch (IOException e) {
+            failAll(e);
+        }
+    }
+
+    // старый сервер не возвращает correlationId и отвечает строго по порядку
+    private CompletableFuture<Response> take(long correlationId) {
+        synchronized (pending) {
+            CompletableFuture<Response> future = pending.remove(correlationId);
+            if (future != null) {
+                return future;
+            }
+            if (correlationId != 0) {
+                abandoned.remove(correlationId);
+                return null;
+            }
+            // id растут, так что самый ранний запрос — меньший из первых в обеих очередях
+            Iterator<Map.Entry<Long, CompletableFuture<Response>>> oldest = pending.entrySet().iterator();
+            Iterator<Long> oldestAbandoned = abandoned.iterator();
+            if (oldestAbandoned.hasNext()) {
+                long id = oldestAbandoned.next();
+                if (!oldest.hasNext() || id < pending.keySet().iterator().next()) {
+                    oldestAbandoned.remove();
+                    return null;
+                }
+            }
+            if (oldest.hasNext()) {
+                future = oldest.next().getValue();
+                oldest.remove();
+            }
+            return future;
+        }
+    }
+
+    private void failAll(IOException cause) {
+        synchronized (pending) {
+            failure = cause;
+            for (CompletableFuture<Response> future : pending.values()) {
+                future.completeExceptionally(cause);
+                window.release();
+            }
+            pending.clear();
+            abandoned.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void writeFrame(SocketChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    public static ByteBuffer readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        readFully(channel, lengthBuffer);
+        lengthBuffer.flip();
+        int length = lengthBuffer.getInt();
+        if (length <= 0 || length > Protocol.MAX_FRAME_LENGTH) {
+            throw new IOException("некорректная длина ответа");
+        }
+        ByteBuffer dataBuffer = ByteBuffer.allocate(length);
+        readFully(channel, dataBuffer);
+        dataBuffer.flip();
+        return dataBuffer;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException("сервер отключился");
+            }
+        }
+    }
+}
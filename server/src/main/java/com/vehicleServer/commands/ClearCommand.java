@@ -4,6 +4,9 @@ import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import com.vehicleShared.managers.CollectionManager;
 
+import java.sql.SQLException;
+import java.util.List;
+
 public class ClearCommand implements Command {
     private final CollectionManager collectionManager;
 
@@ -13,16 +16,20 @@ public class ClearCommand implements Command {
 
     @Override
     public Response execute(Request request) {
-        if (collectionManager.isEmpty()) {
-            return Response.success("Коллекция уже пуста.");
+        // коллекция общая, поэтому удаляются только свои элементы, одним запросом к базе
+        try {
+            List<Long> removed = collectionManager.removeAllOf(request.getLogin());
+            if (removed.isEmpty()) {
+                return Response.success("Коллекция уже пуста.");
+            }
+            return Response.success("Коллекция успешно очищена, удалено элементов: " + removed.size() + ".");
+        } catch (SQLException e) {
+            return Response.error("Ошибка очистки: " + e.getMessage());
         }
-
-        collectionManager.clear();
-        return Response.success("Коллекция успешно очищена.");
     }
 
     @Override
     public String getDescription() {
-        return "Очищает коллекцию, удаляя все элементы.";
+        return "Очищает коллекцию, удаляя все элементы пользователя.";
     }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ public class ExecuteFileCommand implements Command {
         List<Response> responses = FileManager.executeScript(filePath, request.getLogin(), request.getPassword(), collectionManager);
         String result = responses.stream()
                 .map(Response::getMessage)
+                .filter(message -> message != null && !message.isEmpty())
                 .collect(Collectors.joining("\n"));
         return responses.stream().allMatch(Response::isSuccess)
                 ? Response.success(result)
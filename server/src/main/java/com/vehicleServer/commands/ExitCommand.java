@@ -17,6 +17,7 @@ public class ExitCommand implements Command {
         new Thread(() -> {
             try {
                 Thread.sleep(100);
+                // очередь записи, снимок и хранилище закрывает обработчик завершения сервера
                 System.exit(0);
             } catch (InterruptedException ignored) {}
         }).start();
@@ -3,7 +3,9 @@ package com.vehicleServer.commands;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import com.vehicleShared.managers.CollectionManager;
+import com.vehicleShared.managers.PowerStats;
 import java.time.format.DateTimeFormatter;
+import java.util.Locale;
 
 public class InfoCommand implements Command {
     private final CollectionManager collectionManager;
@@ -16,10 +18,21 @@ public class InfoCommand implements Command {
     public Response execute(Request request) {
         String info = String.format(
                 "тип коллекции: %s\nдата инициализации: %s\nколичество элементов: %d",
-                collectionManager.getClass().getSimpleName(),
+                collectionManager.storeType(),
                 collectionManager.initializationDate.format(DateTimeFormatter.ofPattern("yyyy_MM_dd HH:mm")),
                 collectionManager.size()
         );
+        PowerStats stats = collectionManager.stats();
+        if (stats.count() > 0) {
+            info += String.format(Locale.ROOT, "\nмощность: сумма %.2f, средняя %.2f, минимум %s, максимум %s",
+                    stats.sum(), stats.average(), collectionManager.minPower(), collectionManager.maxPower());
+            info += "\nпо типам: " + stats.byType() + "\nпо топливу: " + stats.byFuel();
+        }
+        PowerStats mine = collectionManager.statsOf(request.getLogin());
+        info += String.format(Locale.ROOT, "\nтвоих элементов: %d, их мощность: %.2f", mine.count(), mine.sum());
+        if (collectionManager.getWriteBehind() != null) {
+            info += "\nотложенная запись: " + collectionManager.getWriteBehind();
+        }
         return Response.success(info);
     }
 
@@ -1,6 +1,7 @@
 package com.vehicleServer.commands;
 
 import com.vehicleShared.managers.CollectionManager;
+import com.vehicleShared.managers.Durability;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import com.vehicleShared.model.Vehicle;
@@ -20,7 +21,7 @@ public class InsertCommand implements Command {
             return Response.success("нужен объект vehicle", true);
         }
         try {
-            if (collectionManager.put(vehicle, userId)) {
+            if (collectionManager.put(vehicle, userId, Durability.of(request.getCommand()))) {
                 return Response.success("vehicle добавлен, id=" + vehicle.getId());
             } else {
                 return Response.error("ошибка добавления: невалидные данные");
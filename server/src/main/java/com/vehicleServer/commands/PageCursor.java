@@ -0,0 +1,56 @@
+package com.vehicleServer.commands;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор постраничной выдачи: позиция последнего отданного элемента
+ * в порядке сортировки. Сервер между страницами ничего не хранит.
+ */
+public final class PageCursor {
+    public static final int PAGE_SIZE = Integer.getInteger("server.page.size", 100);
+
+    private final float power;
+    private final long id;
+
+    private PageCursor(float power, long id) {
+        this.power = power;
+        this.id = id;
+    }
+
+    public static PageCursor first() {
+        return new PageCursor(Float.NEGATIVE_INFINITY, Long.MIN_VALUE);
+    }
+
+    public static PageCursor after(float power, long id) {
+        return new PageCursor(power, id);
+    }
+
+    /**
+     * @throws IllegalArgumentException если курсор выдан не этим сервером
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return first();
+        }
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        if (bytes.length != Float.BYTES + Long.BYTES) {
+            throw new IllegalArgumentException("некорректный курсор");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new PageCursor(buffer.getFloat(), buffer.getLong());
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(Float.BYTES + Long.BYTES).putFloat(power).putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public float power() {
+        return power;
+    }
+
+    public long id() {
+        return id;
+    }
+}
@@ -22,33 +22,13 @@ public class RemoveGreaterKey implements Command {
         }
         try {
             long keyThreshold = Long.parseLong(argument);
-            List<Long> keysToRemove = collectionManager.keySet()
-                    .stream()
-                    .filter(key -> key > keyThreshold)
-                    .filter(key -> {
-                        try {
-                            return collectionManager.getDbManager().canModify(key, userId);
-                        } catch (Exception e) {
-                            return false;
-                        }
-                    })
-                    .collect(Collectors.toList());
-
-            if (keysToRemove.isEmpty()) {
+            List<Long> removed = collectionManager.removeGreaterKey(keyThreshold, userId);
+            if (removed.isEmpty()) {
                 return Response.success("нет элементов с id больше " + keyThreshold);
             }
 
-            boolean allRemoved = true;
-            for (Long id : keysToRemove) {
-                if (collectionManager.remove(id, userId) == null) {
-                    allRemoved = false;
-                }
-            }
-
-            String removedKeys = String.join(", ", keysToRemove.stream().map(String::valueOf).collect(Collectors.toList()));
-            return allRemoved
-                    ? Response.success("удалены элементы с id больше " + keyThreshold + ": " + removedKeys)
-                    : Response.error("не все элементы удалось удалить");
+            String removedKeys = removed.stream().sorted().map(String::valueOf).collect(Collectors.joining(", "));
+            return Response.success("удалены элементы с id больше " + keyThreshold + ": " + removedKeys);
         } catch (NumberFormatException e) {
             return Response.error("id должен быть числом");
         } catch (Exception e) {
@@ -1,6 +1,7 @@
 package com.vehicleServer.commands;
 
 import com.vehicleShared.managers.CollectionManager;
+import com.vehicleShared.managers.Durability;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 
@@ -23,10 +24,11 @@ public class RemoveKeyCommand implements Command {
             if (!collectionManager.containsKey(id)) {
                 return Response.error("vehicle с id " + id + " не найден");
             }
-            if (!collectionManager.getDbManager().canModify(id, userId)) {
+            // по индексу: при отложенной записи база может ещё не знать о машине
+            if (!userId.equals(collectionManager.ownerOf(id))) {
                 return Response.error("это не твой vehicle");
             }
-            if (collectionManager.remove(id, userId) != null) {
+            if (collectionManager.remove(id, userId, Durability.of(request.getCommand())) != null) {
                 return Response.success("vehicle удалён");
             }
             return Response.error("ошибка удаления");
@@ -28,16 +28,17 @@ public class ReplaceIfLowerCommand implements Command {
             if (!collectionManager.containsKey(id)) {
                 return Response.error("vehicle с id " + id + " не найден");
             }
-            if (!collectionManager.getDbManager().canModify(id, userId)) {
+            // владельца и мощность сначала сверяет память, мощность окончательно — update в базе
+            if (collectionManager.replaceIfLower(id, newVehicle, userId)) {
+                return Response.success("vehicle с id " + id + " заменён");
+            }
+            if (!userId.equals(collectionManager.ownerOf(id))) {
                 return Response.error("это не твой vehicle");
             }
             Vehicle oldVehicle = collectionManager.get(id);
-            if (newVehicle.getPower() >= oldVehicle.getPower()) {
+            if (oldVehicle != null && newVehicle.getPower() >= oldVehicle.getPower()) {
                 return Response.success("новая мощность (" + newVehicle.getPower() + ") не меньше старой (" + oldVehicle.getPower() + ")");
             }
-            if (collectionManager.update(id, newVehicle, userId)) {
-                return Response.success("vehicle с id " + id + " заменён");
-            }
             return Response.error("ошибка замены");
         } catch (NumberFormatException e) {
             return Response.error("id должен быть числом");
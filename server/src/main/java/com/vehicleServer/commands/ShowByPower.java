@@ -1,10 +1,13 @@
 package com.vehicleServer.commands;
 
+import com.vehicleShared.model.Vehicle;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import com.vehicleShared.managers.CollectionManager;
 
-import java.sql.SQLException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ShowByPower implements Command {
     private final CollectionManager collectionManager;
@@ -15,11 +18,6 @@ public class ShowByPower implements Command {
 
     @Override
     public Response execute(Request request) {
-        try {
-            collectionManager.getDbManager().loadFromDb(request.getLogin(),true);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
         String argument = request.getArgument();
         if (argument == null || argument.isEmpty()) {
             return Response.error("Ошибка: команда 'show_by_power' требует указания мощности.");
@@ -27,13 +25,22 @@ public class ShowByPower implements Command {
 
         try {
             float minPower = Float.parseFloat(argument);
-            String result = collectionManager.getVehiclesByMinPower(minPower);
-            if (result.isEmpty()) {
+            PageCursor cursor = PageCursor.decode(request.getCursor());
+            List<Vehicle> vehicles = collectionManager.pageByPower(minPower, cursor.power(), cursor.id(), PageCursor.PAGE_SIZE + 1);
+            if (vehicles.isEmpty() && request.getCursor() == null) {
                 return Response.success("Не найдено элементов с мощностью, большей или равной " + minPower + ".");
             }
-            return Response.success(result);
+            String nextCursor = null;
+            if (vehicles.size() > PageCursor.PAGE_SIZE) {
+                vehicles = vehicles.subList(0, PageCursor.PAGE_SIZE);
+                Vehicle last = vehicles.get(vehicles.size() - 1);
+                nextCursor = PageCursor.after(last.getPower(), last.getId()).encode();
+            }
+            return Response.page(new ArrayList<Serializable>(vehicles), nextCursor);
         } catch (NumberFormatException e) {
             return Response.error("Ошибка: мощность должна быть числом.");
+        } catch (IllegalArgumentException e) {
+            return Response.error("Ошибка: некорректный курсор страницы.");
         }
     }
 
@@ -41,4 +48,4 @@ public class ShowByPower implements Command {
     public String getDescription() {
         return "Выводит элементы, у которых enginePower больше или равен заданному значению.";
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,13 @@
 package com.vehicleServer.commands;
 
 import com.vehicleShared.managers.CollectionManager;
+import com.vehicleShared.model.Vehicle;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 
-import java.util.stream.Collectors;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ShowCommand implements Command {
     private final CollectionManager collectionManager;
@@ -19,17 +22,27 @@ public class ShowCommand implements Command {
         if (userId == null || userId.isEmpty()) {
             return Response.error("требуется авторизация");
         }
-        String result = collectionManager.isEmpty()
-                ? "ваша коллекция пуста"
-                : collectionManager.entrySet()
-                .stream()
-                .map(entry -> entry.getKey() + " : " + entry.getValue().toString())
-                .collect(Collectors.joining("\n"));
-        return Response.success(result);
+        PageCursor cursor;
+        try {
+            cursor = PageCursor.decode(request.getCursor());
+        } catch (IllegalArgumentException e) {
+            return Response.error("некорректный курсор страницы");
+        }
+        // на одну запись больше страницы, чтобы знать, есть ли продолжение
+        List<Vehicle> vehicles = collectionManager.pageById(cursor.id(), PageCursor.PAGE_SIZE + 1);
+        if (vehicles.isEmpty() && request.getCursor() == null) {
+            return Response.success("ваша коллекция пуста");
+        }
+        String nextCursor = null;
+        if (vehicles.size() > PageCursor.PAGE_SIZE) {
+            vehicles = vehicles.subList(0, PageCursor.PAGE_SIZE);
+            nextCursor = PageCursor.after(0, vehicles.get(vehicles.size() - 1).getId()).encode();
+        }
+        return Response.page(new ArrayList<Serializable>(vehicles), nextCursor);
     }
 
     @Override
     public String getDescription() {
         return "отображает все элементы коллекции текущего пользователя";
     }
-}
\ No newline at end of file
+}
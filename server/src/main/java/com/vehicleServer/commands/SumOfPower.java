@@ -3,7 +3,9 @@ package com.vehicleServer.commands;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import com.vehicleShared.managers.CollectionManager;
-import com.vehicleShared.model.Vehicle;
+import com.vehicleShared.managers.PowerStats;
+
+import java.util.Locale;
 
 public class SumOfPower implements Command {
     private final CollectionManager collectionManager;
@@ -14,15 +16,13 @@ public class SumOfPower implements Command {
 
     @Override
     public Response execute(Request request) {
-        if (collectionManager.isEmpty()) {
+        // агрегаты ведёт сама коллекция, обходить её не нужно
+        PowerStats stats = collectionManager.stats();
+        if (stats.count() == 0) {
             return Response.success("Коллекция пуста, сумма мощности: 0.");
         }
-
-        float powerSum = collectionManager.values()
-                .stream()
-                .map(Vehicle::getPower)
-                .reduce(0f, Float::sum);
-        return Response.success("Общая мощность : " + powerSum);
+        PowerStats mine = collectionManager.statsOf(request.getLogin());
+        return Response.success(String.format(Locale.ROOT, "Общая мощность : %.2f, из них твоих: %.2f", stats.sum(), mine.sum()));
     }
 
     @Override
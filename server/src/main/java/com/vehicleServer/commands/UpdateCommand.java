@@ -1,6 +1,7 @@
 package com.vehicleServer.commands;
 
 import com.vehicleShared.managers.CollectionManager;
+import com.vehicleShared.managers.Durability;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import com.vehicleShared.model.Vehicle;
@@ -28,12 +29,13 @@ public class UpdateCommand implements Command {
             if (!collectionManager.containsKey(id)) {
                 return Response.error("vehicle с id " + id + " не найден");
             }
-            if (!collectionManager.getDbManager().canModify(id, userId)) {
-                return Response.error("это не твой vehicle");
-            }
-            if (collectionManager.update(id, vehicle, userId)) {
+            // владелец проверяется в самом update, индекс нужен только для текста ошибки
+            if (collectionManager.update(id, vehicle, userId, Durability.of(request.getCommand()))) {
                 return Response.success("vehicle обновлён");
             }
+            if (!userId.equals(collectionManager.ownerOf(id))) {
+                return Response.error("это не твой vehicle");
+            }
             return Response.error("ошибка обновления");
         } catch (NumberFormatException e) {
             return Response.error("id должен быть числом");
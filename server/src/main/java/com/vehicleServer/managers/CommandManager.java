@@ -2,25 +2,24 @@ package com.vehicleServer.managers;
 
 import com.vehicleServer.commands.*;
 import com.vehicleShared.managers.CollectionManager;
-import com.vehicleShared.managers.DbManager;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class CommandManager {
     private static final Map<String, Command> commands = new HashMap<>();
+    private static final Set<String> READ_ONLY_COMMANDS = Set.of(
+            "help", "show", "info", "history", "sum_of_engine_power", "show_sorted_by_power");
     private static CollectionManager collectionManager;
-    private static DbManager dbManager;
     private static final Logger logger = LoggerFactory.getLogger(CommandManager.class);
 
-    public static void initialize(CollectionManager collectionManager, DbManager dbManager, Logger logger) {
+    public static void initialize(CollectionManager collectionManager, Logger logger) {
         CommandManager.collectionManager = collectionManager;
-        CommandManager.dbManager = dbManager;
         commands.put("help", new HelpCommand(commands));
         commands.put("show", new ShowCommand(collectionManager));
         commands.put("insert", new InsertCommand(collectionManager));
@@ -40,6 +39,10 @@ public class CommandManager {
         logger.info("загружено {} команд", commands.size());
     }
 
+    public static boolean isReadOnly(String commandName) {
+        return READ_ONLY_COMMANDS.contains(commandName);
+    }
+
     public static Response executeRequest(Request request, boolean isAuthenticated) {
         String commandName = request.getCommand();
         if (commandName == null || commandName.trim().isEmpty()) {
@@ -50,21 +53,14 @@ public class CommandManager {
             return Response.error("команда '" + commandName + "' не найдена. используйте 'help'");
         }
         String userId = request.getLogin();
-        boolean loadAll = commandName.equals("show") || commandName.equals("info") ||
-                commandName.equals("sum_of_engine_power") || commandName.equals("show_sorted_by_power");
+        // коллекция загружена при старте и обновляется при записи, перечитывать её не нужно
         if (!commandName.equals("login") && !commandName.equals("register") && !commandName.equals("help")) {
             if (!isAuthenticated || userId == null || userId.isEmpty()) {
                 return Response.error("требуется авторизация");
             }
-            try {
-                if (!dbManager.authenticateUser(userId, request.getPassword())) {
-                    return Response.error("неверный пароль");
-                }
-                collectionManager.loadFromDb(userId, loadAll);
-            } catch (SQLException e) {
-                logger.error("ошибка загрузки коллекции для userId={}: {}", userId, e.getMessage());
-                return Response.error("ошибка загрузки коллекции: " + e.getMessage());
-            }
+        }
+        if (!collectionManager.isWritable() && !isReadOnly(commandName)) {
+            return Response.error("сервер ещё подключается к базе, пока доступны только команды чтения");
         }
         HistoryCommand.addToHistory(commandName);
         try {
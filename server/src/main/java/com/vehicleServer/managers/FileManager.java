@@ -1,6 +1,8 @@
 package com.vehicleServer.managers;
 
+import com.vehicleServer.commands.HistoryCommand;
 import com.vehicleShared.managers.CollectionManager;
+import com.vehicleShared.managers.Durability;
 import com.vehicleShared.network.Request;
 import com.vehicleShared.network.Response;
 import com.vehicleShared.model.*;
@@ -9,6 +11,7 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -29,6 +32,7 @@ public class FileManager {
                 new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
             String line;
             List<String> vehicleLines = new ArrayList<>();
+            List<Vehicle> pendingInserts = new ArrayList<>();
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
                 if (line.isEmpty()) continue;
@@ -37,12 +41,16 @@ public class FileManager {
                 if (tokens.length == 0) continue;
                 String commandName = tokens[0];
                 String argument = tokens.length > 1 ? tokens[1] : null;
+                if (!commandName.equals("insert")) {
+                    flushInserts(pendingInserts, login, collectionManager, responses);
+                }
 
                 if (VEHICLE_COMMANDS.contains(commandName)) {
                     vehicleLines.clear();
                     for (int i = 0; i < MAX_VEHICLE_LINES; i++) {
                         line = reader.readLine();
                         if (line == null) {
+                            flushInserts(pendingInserts, login, collectionManager, responses);
                             responses.add(Response.error("недостаточно строк для команды " + commandName + " в файле " + filePath));
                             break;
                         }
@@ -50,6 +58,11 @@ public class FileManager {
                     }
                     if (vehicleLines.size() == MAX_VEHICLE_LINES) {
                         Vehicle vehicle = parseVehicle(vehicleLines);
+                        if (vehicle != null && commandName.equals("insert")) {
+                            pendingInserts.add(vehicle);
+                            continue;
+                        }
+                        flushInserts(pendingInserts, login, collectionManager, responses);
                         if (vehicle == null) {
                             responses.add(Response.error("неверный формат vehicle для команды " + commandName + " в строке " + vehicleLines));
                         } else {
@@ -60,9 +73,15 @@ public class FileManager {
                     }
                 } else {
                     Request request = new Request(commandName, argument, login, password);
-                    responses.add(CommandManager.executeRequest(request, true));
+                    Response response = CommandManager.executeRequest(request, true);
+                    responses.add(asText(response));
+                    // весь ответ скрипта уходит одним кадром, поэтому постраничная команда даёт только первую страницу
+                    if (response.isSuccess() && response.getNextCursor() != null) {
+                        responses.add(Response.success("показана первая страница, полностью выведет команда " + commandName));
+                    }
                 }
             }
+            flushInserts(pendingInserts, login, collectionManager, responses);
         } catch (IOException e) {
             responses.add(Response.error("ошибка чтения файла " + filePath + ": " + e.getMessage()));
         } finally {
@@ -71,6 +90,36 @@ public class FileManager {
         return responses;
     }
 
+    // подряд идущие insert уходят в базу одним пакетом, ответы остаются по одному на команду
+    private static void flushInserts(List<Vehicle> pending, String login, CollectionManager collectionManager, List<Response> responses) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        boolean[] added = collectionManager.putAll(pending, login, Durability.of("insert"));
+        for (int i = 0; i < added.length; i++) {
+            HistoryCommand.addToHistory("insert");
+            responses.add(added[i]
+                    ? Response.success("vehicle добавлен, id=" + pending.get(i).getId())
+                    : Response.error("ошибка добавления: невалидные данные"));
+        }
+        pending.clear();
+    }
+
+    // скрипт читают как текст: элементы страницы печатаются так же, как в клиенте
+    private static Response asText(Response response) {
+        if (response.getData() == null) {
+            return response;
+        }
+        StringJoiner text = new StringJoiner("\n");
+        if (response.getMessage() != null && !response.getMessage().isEmpty()) {
+            text.add(response.getMessage());
+        }
+        for (Serializable item : response.getData()) {
+            text.add(item instanceof Vehicle ? ((Vehicle) item).getId() + " : " + item : String.valueOf(item));
+        }
+        return response.isSuccess() ? Response.success(text.toString()) : Response.error(text.toString());
+    }
+
     private static Vehicle parseVehicle(List<String> lines) {
         if (lines.size() != MAX_VEHICLE_LINES) return null;
         try {
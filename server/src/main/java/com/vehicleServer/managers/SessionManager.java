@@ -0,0 +1,74 @@
+package com.vehicleServer.managers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сессии авторизованных соединений. Токен выдаётся при входе, привязан к соединению,
+ * продлевается при каждом использовании и проверяется в памяти без обращения к базе.
+ */
+public class SessionManager {
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("server.session.ttl.minutes", 30));
+    private final SecureRandom random = new SecureRandom();
+    private final Map<Object, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Открывает сессию соединения, заменяя прежнюю.
+     *
+     * @return новый токен
+     */
+    public String open(Object connection, String userId) {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(connection, new Session(userId, token, System.currentTimeMillis() + TTL_MILLIS));
+        return token;
+    }
+
+    /**
+     * @return пользователь, если токен выдан этому соединению и не истёк, иначе null
+     */
+    public String authorize(Object connection, String token) {
+        Session session = sessions.get(connection);
+        if (session == null || token == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now > session.expiresAt || !MessageDigest.isEqual(
+                session.token.getBytes(StandardCharsets.US_ASCII), token.getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        session.expiresAt = now + TTL_MILLIS;
+        return session.userId;
+    }
+
+    public String userOf(Object connection) {
+        Session session = sessions.get(connection);
+        return session == null ? null : session.userId;
+    }
+
+    /**
+     * @return пользователь отозванной сессии или null, если её не было
+     */
+    public String revoke(Object connection) {
+        Session session = sessions.remove(connection);
+        return session == null ? null : session.userId;
+    }
+
+    private static final class Session {
+        private final String userId;
+        private final String token;
+        private volatile long expiresAt;
+
+        private Session(String userId, String token, long expiresAt) {
+            this.userId = userId;
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
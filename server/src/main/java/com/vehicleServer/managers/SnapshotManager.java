@@ -0,0 +1,101 @@
+package com.vehicleServer.managers;
+
+import com.vehicleShared.managers.CollectionManager;
+import com.vehicleShared.managers.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Тёплый старт: при запуске коллекция поднимается из снимка и сразу обслуживает чтение,
+ * пока сервер подключается к базе. Снимок пишется при завершении сервера и раз в
+ * {@code server.snapshot.interval.minutes} минут; файл задаётся {@code server.snapshot.path}.
+ */
+public class SnapshotManager {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotManager.class);
+    private static final Path PATH = Path.of(System.getProperty("server.snapshot.path", "collection.snapshot"));
+    private static final long INTERVAL_MINUTES = Long.getLong("server.snapshot.interval.minutes", 5);
+    private final CollectionManager collectionManager;
+    private final StorageBackend storage;
+    // хэши паролей на момент последнего снимка: по ним пускаем, пока база не подключена
+    private volatile Map<String, String> users = Map.of();
+    private volatile boolean hasData;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotManager(CollectionManager collectionManager, StorageBackend storage) {
+        this.collectionManager = collectionManager;
+        this.storage = storage;
+    }
+
+    /**
+     * @return true, если коллекция поднята из снимка
+     */
+    public boolean restore() {
+        if (!Files.exists(PATH)) {
+            return false;
+        }
+        long started = System.nanoTime();
+        try {
+            Map<String, String> restored = new HashMap<>();
+            long savedAt = collectionManager.restore(PATH, restored);
+            users = restored;
+            storage.cacheCredentials(restored);
+            hasData = true;
+            logger.info("коллекция поднята из снимка от {}: {} элементов за {} мс",
+                    Instant.ofEpochMilli(savedAt), collectionManager.size(), (System.nanoTime() - started) / 1_000_000);
+            return true;
+        } catch (IOException e) {
+            logger.warn("снимок не прочитан, обычный старт: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Вызывается после загрузки из базы: дальше снимок пишется по расписанию.
+     */
+    public synchronized void loaded() {
+        hasData = true;
+        if (scheduler != null || INTERVAL_MINUTES <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::save, INTERVAL_MINUTES, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized void save() {
+        if (!hasData) {
+            return; // коллекция так и не загрузилась, пустой снимок затёр бы хороший
+        }
+        long started = System.nanoTime();
+        try {
+            if (storage.isOpen()) {
+                users = storage.loadUsers();
+            }
+            int saved = collectionManager.saveSnapshot(PATH, users);
+            logger.info("снимок коллекции записан: {} элементов за {} мс", saved, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | SQLException e) {
+            logger.error("не удалось записать снимок коллекции: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
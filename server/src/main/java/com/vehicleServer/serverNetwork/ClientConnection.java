@@ -0,0 +1,224 @@
+package com.vehicleServer.serverNetwork;
+
+import com.vehicleShared.network.Protocol;
+import com.vehicleShared.network.WireBuffer;
+import com.vehicleShared.network.WireCodec;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние соединения, прикреплённое к его {@link SelectionKey}: недочитанный кадр,
+ * согласованный формат и очередь исходящих кадров. Читает ровно то, что уже пришло,
+ * и разбирает все полные кадры за один проход, не крутясь в ожидании остатка.
+ * Исходящие кадры в канал пишет только реактор, по готовности канала к записи.
+ */
+public class ClientConnection {
+    private static final int HEADER_LENGTH = 4;
+    private static final int MAX_GATHER = 16;
+    private static final long MAX_QUEUED_BYTES = 16L * Protocol.MAX_FRAME_LENGTH;
+    private final SocketChannel channel;
+    private final SocketAddress address;
+    private final BufferPool bufferPool;
+    private final Reactor reactor;
+    private ByteBuffer readBuffer;
+    private ByteBuffer largeFrame;
+    private volatile WireCodec codec;
+    private volatile SelectionKey key;
+    private boolean closed;
+    private final Queue<Outbound> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final WireBufferPool wireBufferPool;
+
+    public ClientConnection(SocketChannel channel, SocketAddress address, BufferPool bufferPool,
+                            WireBufferPool wireBufferPool, Reactor reactor) {
+        this.channel = channel;
+        this.address = address;
+        this.bufferPool = bufferPool;
+        this.wireBufferPool = wireBufferPool;
+        this.reactor = reactor;
+    }
+
+    private static final class Outbound {
+        final ByteBuffer frame;
+        final WireBuffer owner;
+        final int length;
+
+        Outbound(ByteBuffer frame, WireBuffer owner) {
+            this.frame = frame;
+            this.owner = owner;
+            this.length = frame.remaining();
+        }
+    }
+
+    @FunctionalInterface
+    public interface FrameHandler {
+        void onFrame(ByteBuffer body) throws IOException;
+    }
+
+    /**
+     * Дочитывает доступные байты и отдаёт обработчику каждый собранный кадр.
+     * Тело кадра действительно только внутри вызова обработчика.
+     *
+     * @return число прочитанных байт или -1, если клиент закрыл соединение
+     */
+    public synchronized int read(FrameHandler handler) throws IOException {
+        if (largeFrame != null) {
+            return readLargeFrame(handler);
+        }
+        if (readBuffer == null) {
+            readBuffer = bufferPool.acquire();
+        }
+        int bytesRead = channel.read(readBuffer);
+        if (bytesRead == -1) {
+            return -1;
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= HEADER_LENGTH) {
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length <= 0 || length > Protocol.MAX_FRAME_LENGTH) {
+                throw new StreamCorruptedException("некорректная длина кадра " + length);
+            }
+            if (readBuffer.remaining() - HEADER_LENGTH < length) {
+                if (HEADER_LENGTH + length > readBuffer.capacity()) {
+                    // кадр больше буфера пула: дочитываем его в отдельный буфер
+                    readBuffer.position(readBuffer.position() + HEADER_LENGTH);
+                    largeFrame = ByteBuffer.allocate(length);
+                    largeFrame.put(readBuffer);
+                }
+                break;
+            }
+            readBuffer.position(readBuffer.position() + HEADER_LENGTH);
+            ByteBuffer body = readBuffer.slice();
+            body.limit(length);
+            readBuffer.position(readBuffer.position() + length);
+            handler.onFrame(body);
+        }
+        readBuffer.compact();
+        if (readBuffer.position() == 0) {
+            bufferPool.release(readBuffer);
+            readBuffer = null;
+        }
+        return bytesRead;
+    }
+
+    private int readLargeFrame(FrameHandler handler) throws IOException {
+        int bytesRead = channel.read(largeFrame);
+        if (bytesRead == -1) {
+            return -1;
+        }
+        if (!largeFrame.hasRemaining()) {
+            ByteBuffer body = largeFrame.flip();
+            largeFrame = null;
+            handler.onFrame(body);
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Ставит готовый кадр в очередь на отправку; вызывается из любого потока.
+     * Буфер-владелец вернётся в пул, когда кадр целиком уйдёт в канал.
+     */
+    public void send(ByteBuffer frame, WireBuffer owner) throws IOException {
+        if (!channel.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        Outbound item = new Outbound(frame, owner);
+        if (queuedBytes.addAndGet(item.length) > MAX_QUEUED_BYTES) {
+            throw new IOException("клиент не забирает ответы");
+        }
+        outbound.add(item);
+        if (flushScheduled.compareAndSet(false, true)) {
+            reactor.scheduleFlush(this);
+        }
+    }
+
+    /**
+     * Пишет очередь одной собирающей записью на несколько кадров за раз. Только из потока реактора.
+     *
+     * @return true, если очередь опустела; иначе нужно ждать готовности канала к записи
+     */
+    boolean flush() throws IOException {
+        while (true) {
+            int count = 0;
+            Iterator<Outbound> pending = outbound.iterator();
+            while (count < MAX_GATHER && pending.hasNext()) {
+                gather[count++] = pending.next().frame;
+            }
+            if (count == 0) {
+                flushScheduled.set(false);
+                // кадр мог прийти между проверкой очереди и сбросом флага
+                if (outbound.isEmpty() || !flushScheduled.compareAndSet(false, true)) {
+                    return true;
+                }
+                continue;
+            }
+            channel.write(gather, 0, count);
+            for (int i = 0; i < count; i++) {
+                gather[i] = null;
+            }
+            Outbound head;
+            while ((head = outbound.peek()) != null && !head.frame.hasRemaining()) {
+                outbound.poll();
+                queuedBytes.addAndGet(-head.length);
+                wireBufferPool.release(head.owner);
+            }
+            if (head != null) {
+                return false;
+            }
+        }
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    SelectionKey key() {
+        return key;
+    }
+
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            reactor.connectionClosed();
+            bufferPool.release(readBuffer);
+            readBuffer = null;
+            largeFrame = null;
+            // буферы очереди могут ещё писаться реактором, поэтому в пул не возвращаются
+            outbound.clear();
+        }
+    }
+
+    public SocketChannel channel() {
+        return channel;
+    }
+
+    public SocketAddress address() {
+        return address;
+    }
+
+    public WireCodec codec() {
+        return codec;
+    }
+
+    public void setCodec(WireCodec codec) {
+        this.codec = codec;
+    }
+}
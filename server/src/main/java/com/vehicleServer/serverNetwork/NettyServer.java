@@ -0,0 +1,144 @@
+package com.vehicleServer.serverNetwork;
+
+import com.vehicleShared.network.*;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Альтернативный транспорт на netty, включается через -Dserver.transport=netty.
+ * Авторизация, очередь запросов и формат кадров те же, что у собственного цикла на селекторах.
+ */
+public class NettyServer {
+    private static final Logger logger = LoggerFactory.getLogger(NettyServer.class);
+    private final int port;
+    private final int ioThreads;
+    private final RequestHandler requestHandler;
+    private final RequestExecutor requestExecutor;
+    private final WireBufferPool wireBufferPool;
+
+    public NettyServer(int port, int ioThreads, RequestHandler requestHandler, RequestExecutor requestExecutor,
+                       WireBufferPool wireBufferPool) {
+        this.port = port;
+        this.ioThreads = ioThreads;
+        this.requestHandler = requestHandler;
+        this.requestExecutor = requestExecutor;
+        this.wireBufferPool = wireBufferPool;
+    }
+
+    public void run() throws InterruptedException {
+        boolean epoll = Epoll.isAvailable();
+        EventLoopGroup acceptGroup = epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+        EventLoopGroup ioGroup = epoll ? new EpollEventLoopGroup(ioThreads) : new NioEventLoopGroup(ioThreads);
+        try {
+            ServerBootstrap bootstrap = new ServerBootstrap()
+                    .group(acceptGroup, ioGroup)
+                    .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel channel) {
+                            channel.pipeline().addLast(
+                                    new LengthFieldBasedFrameDecoder(Protocol.MAX_FRAME_LENGTH + 4, 0, 4, 0, 4),
+                                    new ClientHandler());
+                        }
+                    });
+            Channel serverChannel = bootstrap.bind(port).sync().channel();
+            logger.info("сервер netty запущен на порту {}, epoll: {}, потоков ввода-вывода: {}", port, epoll, ioThreads);
+            serverChannel.closeFuture().sync();
+        } finally {
+            acceptGroup.shutdownGracefully();
+            ioGroup.shutdownGracefully();
+        }
+    }
+
+    private class ClientHandler extends ChannelInboundHandlerAdapter {
+        private volatile WireCodec codec;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            logger.info("клиент подключен: {}", ctx.channel().remoteAddress());
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws IOException {
+            ByteBuf frame = (ByteBuf) msg;
+            try {
+                ByteBuffer body = frame.nioBuffer();
+                if (codec == null) {
+                    if (Protocol.isHandshake(body)) {
+                        byte version = Protocol.chooseVersion(body);
+                        byte features = Protocol.chooseFeatures(body);
+                        codec = Protocol.codecFor(version, features);
+                        WireBuffer out = wireBufferPool.acquire().startFrame();
+                        Protocol.writeAccept(version, features, out);
+                        writeFrame(ctx, out);
+                        return;
+                    }
+                    codec = SerializationCodec.INSTANCE;
+                }
+                Request request = codec.readRequest(body);
+                Channel channel = ctx.channel();
+                boolean accepted = requestExecutor.submit(channel,
+                        () -> send(ctx, requestHandler.handle(channel, request)),
+                        requestHandler.isExclusive(request));
+                if (!accepted) {
+                    logger.warn("запрос {} от {} отклонён: сервер перегружен", request.getCommand(), channel.remoteAddress());
+                    if (!requestHandler.canReject(request, requestExecutor.isIdle(channel))) {
+                        ctx.close();
+                        return;
+                    }
+                    send(ctx, requestHandler.rejected(request));
+                }
+            } finally {
+                frame.release();
+            }
+        }
+
+        private void send(ChannelHandlerContext ctx, Response response) {
+            WireBuffer out = wireBufferPool.acquire();
+            try {
+                codec.writeResponse(response, out.startFrame());
+                writeFrame(ctx, out);
+            } catch (IOException e) {
+                wireBufferPool.release(out);
+                logger.error("ошибка отправки ответа клиенту {}: {}", ctx.channel().remoteAddress(), e.getMessage());
+                ctx.close();
+            }
+        }
+
+        // кадр уходит обёрткой над прямым буфером пула без копии, буфер возвращается, когда запись завершится
+        private void writeFrame(ChannelHandlerContext ctx, WireBuffer out) {
+            ctx.writeAndFlush(Unpooled.wrappedBuffer(out.finishFrame()))
+                    .addListener(future -> wireBufferPool.release(out));
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            requestHandler.disconnected(ctx.channel());
+            requestExecutor.release(ctx.channel());
+            logger.info("клиент {} отключен", ctx.channel().remoteAddress());
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            logger.error("ошибка чтения от клиента {}: {}", ctx.channel().remoteAddress(), cause.getMessage());
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.vehicleServer.serverNetwork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Поток ввода-вывода со своим селектором. Соединения регистрируются и пишутся только из
+ * этого же потока: приёмник и рабочие потоки кладут их в очереди и будят селектор.
+ */
+public class Reactor implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(Reactor.class);
+    private final String name;
+    private final Selector selector;
+    private final Consumer<SelectionKey> readHandler;
+    private final Consumer<SelectionKey> closeHandler;
+    private final Queue<ClientConnection> registrations = new ConcurrentLinkedQueue<>();
+    private final Queue<ClientConnection> flushes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * @param closeHandler отключает клиента, если запись в его канал не удалась
+     */
+    public Reactor(String name, Consumer<SelectionKey> readHandler, Consumer<SelectionKey> closeHandler) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+        this.readHandler = readHandler;
+        this.closeHandler = closeHandler;
+    }
+
+    public void start() {
+        Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void register(ClientConnection connection) {
+        connections.incrementAndGet();
+        registrations.add(connection);
+        selector.wakeup();
+    }
+
+    public void scheduleFlush(ClientConnection connection) {
+        flushes.add(connection);
+        selector.wakeup();
+    }
+
+    public void connectionClosed() {
+        connections.decrementAndGet();
+    }
+
+    public int load() {
+        return connections.get();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                registerPending();
+                flushPending();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isWritable()) {
+                        flush((ClientConnection) key.attachment());
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        readHandler.accept(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                logger.error("ошибка селектора {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void registerPending() {
+        ClientConnection connection;
+        while ((connection = registrations.poll()) != null) {
+            try {
+                connection.attach(connection.channel().register(selector, SelectionKey.OP_READ, connection));
+            } catch (IOException e) {
+                logger.error("не удалось зарегистрировать клиента {}: {}", connection.address(), e.getMessage());
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void flushPending() {
+        ClientConnection connection;
+        while ((connection = flushes.poll()) != null) {
+            flush(connection);
+        }
+    }
+
+    // сначала пробуем записать сразу, OP_WRITE нужен только если канал не принял всё
+    private void flush(ClientConnection connection) {
+        SelectionKey key = connection.key();
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        try {
+            if (connection.flush()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            logger.error("ошибка отправки ответа клиенту {}: {}", connection.address(), e.getMessage());
+            closeHandler.accept(key);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("ошибка закрытия селектора {}: {}", name, e.getMessage());
+        }
+    }
+}
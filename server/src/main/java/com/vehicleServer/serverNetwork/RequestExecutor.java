@@ -0,0 +1,144 @@
+package com.vehicleServer.serverNetwork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель запросов клиентов: ограничивает число запросов в работе на весь сервер
+ * и на одно соединение. Изменяющие запросы соединения выполняются строго по очереди,
+ * а подряд идущие читающие могут выполняться параллельно и завершаться в любом порядке.
+ */
+public class RequestExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+    private final ExecutorService workers;
+    private final Semaphore inFlight;
+    private final int maxPerConnection;
+    private final Map<Object, Lane> lanes = new ConcurrentHashMap<>();
+
+    public RequestExecutor(int workerThreads, int maxInFlight, int maxPerConnection) {
+        this.workers = createWorkers(workerThreads);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxPerConnection = maxPerConnection;
+    }
+
+    /**
+     * Ставит задачу в очередь соединения.
+     *
+     * @param exclusive задача ждёт завершения всех предыдущих и не пускает следующие, пока не закончится
+     * @return false, если превышен лимит соединения или сервера и задача отклонена
+     */
+    public boolean submit(Object connection, Runnable task, boolean exclusive) {
+        return lanes.computeIfAbsent(connection, c -> new Lane()).offer(new Task(task, exclusive));
+    }
+
+    /**
+     * @return true, если у соединения нет задач в очереди и в работе: ответы на все его
+     * прежние запросы уже отправлены
+     */
+    public boolean isIdle(Object connection) {
+        Lane lane = lanes.get(connection);
+        return lane == null || lane.isIdle();
+    }
+
+    public void release(Object connection) {
+        lanes.remove(connection);
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    // на java 21+ каждая задача получает виртуальный поток, иначе общий пул фиксированного размера
+    private static ExecutorService createWorkers(int workerThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("запросы выполняются в виртуальных потоках");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            logger.info("запросы выполняются в пуле из {} потоков", workerThreads);
+            return Executors.newFixedThreadPool(workerThreads, r -> {
+                Thread thread = new Thread(r, "request-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static final class Task {
+        final Runnable body;
+        final boolean exclusive;
+
+        Task(Runnable body, boolean exclusive) {
+            this.body = body;
+            this.exclusive = exclusive;
+        }
+    }
+
+    private class Lane {
+        private final Queue<Task> tasks = new ArrayDeque<>();
+        private int pending;
+        private int running;
+        private boolean exclusiveRunning;
+
+        synchronized boolean offer(Task task) {
+            if (pending >= maxPerConnection || !inFlight.tryAcquire()) {
+                return false;
+            }
+            pending++;
+            tasks.add(task);
+            schedule();
+            return true;
+        }
+
+        synchronized boolean isIdle() {
+            return pending == 0;
+        }
+
+        // вызывается под блокировкой очереди
+        private void schedule() {
+            while (!tasks.isEmpty() && !exclusiveRunning) {
+                Task next = tasks.peek();
+                if (next.exclusive && running > 0) {
+                    return;
+                }
+                tasks.poll();
+                running++;
+                exclusiveRunning = next.exclusive;
+                try {
+                    workers.execute(() -> run(next));
+                } catch (RejectedExecutionException e) {
+                    running--;
+                    exclusiveRunning = false;
+                    pending--;
+                    inFlight.release();
+                }
+            }
+        }
+
+        private void run(Task task) {
+            try {
+                task.body.run();
+            } catch (RuntimeException e) {
+                logger.error("ошибка выполнения запроса: {}", e.getMessage());
+            } finally {
+                inFlight.release();
+                synchronized (this) {
+                    pending--;
+                    running--;
+                    if (task.exclusive) {
+                        exclusiveRunning = false;
+                    }
+                    schedule();
+                }
+            }
+        }
+    }
+}
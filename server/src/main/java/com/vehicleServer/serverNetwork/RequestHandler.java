@@ -0,0 +1,134 @@
+package com.vehicleServer.serverNetwork;
+
+import com.vehicleServer.managers.CommandManager;
+import com.vehicleServer.managers.SessionManager;
+import com.vehicleShared.managers.StorageBackend;
+import com.vehicleShared.network.Request;
+import com.vehicleShared.network.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Авторизация и выполнение запросов, общие для всех транспортов. Соединение
+ * идентифицируется объектом канала своего транспорта.
+ */
+public class RequestHandler {
+    private static final Logger logger = LoggerFactory.getLogger(RequestHandler.class);
+    private final StorageBackend storage;
+    private final SessionManager sessions = new SessionManager();
+    private final Map<String, Object> activeLogins = new ConcurrentHashMap<>();
+
+    public RequestHandler(StorageBackend storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Без correlationId клиент ждёт ответы по порядку, поэтому его запросы не обгоняют друг друга.
+     */
+    public boolean isExclusive(Request request) {
+        return request.getCorrelationId() == 0 || !CommandManager.isReadOnly(request.getCommand());
+    }
+
+    /**
+     * Клиент без correlationId сопоставляет ответы по порядку, и отказ, отправленный сразу,
+     * обогнал бы ответы на его прежние запросы. Такому клиенту отказывают, только когда
+     * прежних запросов в работе нет; иначе соединение закрывается.
+     *
+     * @param idle у соединения нет запросов в очереди и в работе
+     */
+    public boolean canReject(Request request, boolean idle) {
+        return request.getCorrelationId() != 0 || idle;
+    }
+
+    public Response rejected(Request request) {
+        return correlate(request, Response.error("сервер перегружен, повторите запрос позже"));
+    }
+
+    public Response handle(Object connection, Request request) {
+        try {
+            String userId = request.getLogin();
+
+            if (request.getCommand().equals("login") && userId != null && !claimLogin(connection, userId)) {
+                return correlate(request, Response.error("пользователь " + userId + " уже авторизован"));
+            }
+
+            Response response;
+            if (request.getCommand().equals("login")) {
+                if (storage.authenticateUser(userId, request.getPassword())) {
+                    response = Response.authorized("авторизация успешна", bindUser(connection, userId));
+                    logger.info("пользователь {} авторизован", userId);
+                } else {
+                    releaseLogin(connection, userId);
+                    response = Response.error("неверный логин или пароль");
+                }
+            } else if (request.getCommand().equals("register")) {
+                if (storage.registerUser(userId, request.getPassword())) {
+                    response = Response.authorized("регистрация успешна", bindUser(connection, userId));
+                    logger.info("пользователь {} зарегистрирован", userId);
+                } else {
+                    response = Response.error("пользователь уже существует или ошибка регистрации");
+                }
+            } else if (request.getCommand().equals("logout")) {
+                disconnected(connection);
+                response = Response.success("сессия завершена");
+            } else if (request.getCommand().equals("help")) {
+                response = CommandManager.executeRequest(request, false);
+            } else {
+                // пользователь берётся из сессии, а не из запроса, пароль больше не проверяется
+                String sessionUser = sessions.authorize(connection, request.getSessionToken());
+                if (sessionUser == null && sessions.userOf(connection) != null) {
+                    disconnected(connection);
+                    return correlate(request, Response.error("сессия истекла или недействительна, выполните login заново"));
+                }
+                if (sessionUser != null) {
+                    request.setLogin(sessionUser);
+                }
+                response = CommandManager.executeRequest(request, sessionUser != null);
+            }
+            return correlate(request, response);
+        } catch (Exception e) {
+            logger.error("ошибка обработки запроса от {}: {}", connection, e.getMessage());
+            if (request.getCommand().equals("login")) {
+                releaseLogin(connection, request.getLogin());
+            }
+            return correlate(request, Response.error("внутренняя ошибка сервера: " + e.getMessage()));
+        }
+    }
+
+    public void disconnected(Object connection) {
+        String userId = sessions.revoke(connection);
+        if (userId != null) {
+            activeLogins.remove(userId, connection);
+        }
+    }
+
+    // логин занимается атомарно: соединения разных потоков не должны пустить одного пользователя дважды
+    private boolean claimLogin(Object connection, String userId) {
+        Object owner = activeLogins.putIfAbsent(userId, connection);
+        return owner == null || owner.equals(connection);
+    }
+
+    private String bindUser(Object connection, String userId) {
+        String previous = sessions.userOf(connection);
+        String token = sessions.open(connection, userId);
+        if (previous != null && !previous.equals(userId)) {
+            activeLogins.remove(previous, connection);
+        }
+        activeLogins.put(userId, connection);
+        return token;
+    }
+
+    private void releaseLogin(Object connection, String userId) {
+        if (userId != null && !userId.equals(sessions.userOf(connection))) {
+            activeLogins.remove(userId, connection);
+        }
+    }
+
+    private static Response correlate(Request request, Response response) {
+        response.setCorrelationId(request.getCorrelationId());
+        return response;
+    }
+}
@@ -1,10 +1,12 @@
 package com.vehicleServer.serverNetwork;
 
-import com.vehicleShared.network.Request;
-import com.vehicleShared.network.Response;
+import com.vehicleShared.network.*;
 import com.vehicleServer.managers.CommandManager;
+import com.vehicleServer.managers.SnapshotManager;
 import com.vehicleShared.managers.CollectionManager;
 import com.vehicleShared.managers.DbManager;
+import com.vehicleShared.managers.EmbeddedStorage;
+import com.vehicleShared.managers.StorageBackend;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,16 +14,35 @@ import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Server {
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final int WORKER_THREADS = Integer.getInteger("server.workers", Runtime.getRuntime().availableProcessors() * 2);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("server.maxInFlight", 256);
+    private static final int MAX_IN_FLIGHT_PER_CLIENT = Integer.getInteger("server.maxInFlightPerClient", 16);
+    private static final int READ_BUFFER_SIZE = Integer.getInteger("server.readBufferSize", 16 * 1024);
+    private static final int REACTOR_THREADS = Integer.getInteger("server.reactors", Runtime.getRuntime().availableProcessors());
+    private static final String TRANSPORT = System.getProperty("server.transport", "nio");
+    // postgres или embedded: встроенное хранилище в каталоге storage.path
+    private static final String STORAGE = System.getProperty("server.storage", "postgres");
+    private static final String STORAGE_PATH = System.getProperty("storage.path", "data");
     private final int port;
-    private DbManager dbManager;
-    private final ExecutorService responderPool = Executors.newCachedThreadPool();
-    private final Map<SocketChannel, String> authenticatedUsers = new ConcurrentHashMap<>();
+    private StorageBackend storage;
+    private CollectionManager collectionManager;
+    private SnapshotManager snapshots;
+    private final RequestExecutor requestExecutor = new RequestExecutor(WORKER_THREADS, MAX_IN_FLIGHT, MAX_IN_FLIGHT_PER_CLIENT);
+    private RequestHandler requestHandler;
     private final Map<SocketChannel, SocketAddress> clientAddresses = new ConcurrentHashMap<>();
+    private final BufferPool bufferPool = new BufferPool(READ_BUFFER_SIZE, 1024);
+    private final WireBufferPool wireBufferPool = new WireBufferPool(4 * 1024, 256 * 1024, 1024);
+    private final List<Reactor> reactors = new ArrayList<>();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private int nextReactor;
     private String dbUser;
     private String dbPassword;
 
@@ -31,9 +52,11 @@ public class Server {
     }
 
     private void initializeManagers() {
-        dbManager = new DbManager();
-        CollectionManager collectionManager = new CollectionManager(dbManager);
-        CommandManager.initialize(collectionManager, dbManager, logger);
+        storage = STORAGE.equalsIgnoreCase("embedded") ? new EmbeddedStorage(Path.of(STORAGE_PATH)) : new DbManager();
+        collectionManager = new CollectionManager(storage);
+        snapshots = new SnapshotManager(collectionManager, storage);
+        CommandManager.initialize(collectionManager, logger);
+        requestHandler = new RequestHandler(storage);
     }
 
     private void promptDbCredentials() {
@@ -45,6 +68,79 @@ public class Server {
     }
 
     public void start() {
+        if (snapshots.restore()) {
+            // чтение обслуживается по снимку, а база подключается в фоне
+            Thread connector = new Thread(() -> {
+                if (connectStorage()) {
+                    // база сверена, вход по хэшам из снимка больше не нужен
+                    storage.cacheCredentials(Map.of());
+                } else {
+                    logger.error("хранилище недоступно, сервер работает только на чтение");
+                }
+            }, "storage-connect");
+            connector.setDaemon(true);
+            connector.start();
+        } else if (!connectStorage()) {
+            requestExecutor.shutdown();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "shutdown"));
+
+        try {
+            if (TRANSPORT.equalsIgnoreCase("netty")) {
+                new NettyServer(port, REACTOR_THREADS, requestHandler, requestExecutor, wireBufferPool).run();
+            } else {
+                runReactors();
+            }
+        } catch (InterruptedException e) {
+            logger.error("сервер прерван: {}", e.getMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            reactors.forEach(Reactor::shutdown);
+            shutdown();
+            requestExecutor.shutdown();
+        }
+    }
+
+    private boolean connectStorage() {
+        if (!openStorage()) {
+            return false;
+        }
+        try {
+            collectionManager.load();
+            logger.info("коллекция загружена: {} элементов", collectionManager.size());
+            snapshots.loaded();
+            return true;
+        } catch (SQLException e) {
+            logger.error("не удалось загрузить коллекцию: {}", e.getMessage());
+            storage.close();
+            return false;
+        }
+    }
+
+    // сначала дописываем очередь, потом снимок, чтобы он совпадал с базой
+    // зовут и хук завершения, и выход из start(): очередь, снимок и хранилище закрываются один раз
+    private void shutdown() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+        snapshots.shutdown();
+        collectionManager.close();
+        snapshots.save();
+        storage.close();
+    }
+
+    private boolean openStorage() {
+        if (storage instanceof EmbeddedStorage embedded) {
+            try {
+                embedded.open();
+                return true;
+            } catch (SQLException e) {
+                logger.error("{}", e.getMessage());
+                return false;
+            }
+        }
+        DbManager dbManager = (DbManager) storage;
         promptDbCredentials();
         String url = "jdbc:postgresql://pg:5432/studs";
         int maxRetries = 5;
@@ -54,223 +150,146 @@ public class Server {
             try {
                 if (dbManager.initDb(url, dbUser, dbPassword)) {
                     logger.info("подключение к базе с попытки {}", attempt);
-                    break;
+                    return true;
                 }
                 logger.warn("попытка {}: не удалось подключиться к базе", attempt);
                 if (attempt == maxRetries) {
                     logger.error("не удалось подключиться после {} попыток", maxRetries);
-                    return;
+                    return false;
                 }
                 Thread.sleep(retryDelayMs);
             } catch (InterruptedException e) {
                 logger.error("ошибка при ожидании: {}", e.getMessage());
                 Thread.currentThread().interrupt();
-                return;
+                return false;
             }
         }
+        return false;
+    }
 
+    private void runReactors() {
         try (ServerSocketChannel serverSocket = ServerSocketChannel.open()) {
             serverSocket.bind(new InetSocketAddress(port));
-            serverSocket.configureBlocking(false);
-            Selector selector = Selector.open();
-            serverSocket.register(selector, SelectionKey.OP_ACCEPT);
-            logger.info("сервер запущен на порту {}", port);
+            for (int i = 0; i < REACTOR_THREADS; i++) {
+                Reactor reactor = new Reactor("reactor-" + i, this::readClient, this::disconnectClient);
+                reactors.add(reactor);
+                reactor.start();
+            }
+            logger.info("сервер запущен на порту {}, потоков ввода-вывода: {}", port, reactors.size());
+            // этот поток только принимает подключения и раздаёт их реакторам
             while (true) {
-                selector.select();
-                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-                while (keys.hasNext()) {
-                    SelectionKey key = keys.next();
-                    keys.remove();
-                    try {
-                        if (key.isAcceptable()) {
-                            acceptClient(serverSocket, selector);
-                        } else if (key.isReadable()) {
-                            readClient(key);
-                        }
-                    } catch (IOException e) {
-                        logger.error("ошибка обработки клиента: {}", e.getMessage());
-                        disconnectClient(key);
-                    }
+                SocketChannel client = serverSocket.accept();
+                try {
+                    acceptClient(client);
+                } catch (IOException e) {
+                    logger.error("ошибка подключения клиента: {}", e.getMessage());
+                    client.close();
                 }
             }
         } catch (IOException e) {
             logger.error("ошибка сервера: {}", e.getMessage());
-        } finally {
-            dbManager.closeDb();
-            responderPool.shutdown();
         }
     }
 
-    private void acceptClient(ServerSocketChannel serverSocket, Selector selector) throws IOException {
-        SocketChannel client = serverSocket.accept();
+    private void acceptClient(SocketChannel client) throws IOException {
         client.configureBlocking(false);
-        client.register(selector, SelectionKey.OP_READ);
-        clientAddresses.put(client, client.getRemoteAddress());
-        logger.info("клиент подключен: {}", clientAddresses.get(client));
+        SocketAddress address = client.getRemoteAddress();
+        Reactor reactor = leastLoadedReactor();
+        clientAddresses.put(client, address);
+        reactor.register(new ClientConnection(client, address, bufferPool, wireBufferPool, reactor));
+        logger.info("клиент подключен: {}", address);
     }
 
-    private void readClient(SelectionKey key) throws IOException {
-        SocketChannel client = (SocketChannel) key.channel();
-        try {
-            Request request = readRequest(client);
-            if (request != null) {
-                processClient(client, request, key);
+    // наименее загруженный реактор, при равенстве по кругу
+    private Reactor leastLoadedReactor() {
+        int start = nextReactor;
+        nextReactor = (nextReactor + 1) % reactors.size();
+        Reactor chosen = reactors.get(start);
+        for (int i = 1; i < reactors.size(); i++) {
+            Reactor candidate = reactors.get((start + i) % reactors.size());
+            if (candidate.load() < chosen.load()) {
+                chosen = candidate;
             }
-        } catch (IOException | ClassNotFoundException e) {
-            SocketAddress address = clientAddresses.getOrDefault(client, null);
-            logger.error("ошибка чтения от клиента {}: {}", address, e.getMessage());
-            disconnectClient(key);
         }
+        return chosen;
     }
 
-    private Request readRequest(SocketChannel client) throws IOException, ClassNotFoundException {
-        SocketAddress address = clientAddresses.getOrDefault(client, null);
+    private void readClient(SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
         try {
-            if (!client.isOpen() || !client.isConnected()) {
-                disconnectClient(client);
-                return null;
-            }
-            client.socket().setSoTimeout(5000);
-
-            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
-            int totalBytesRead = 0;
-            while (totalBytesRead < 4) {
-                int bytesRead = client.read(lengthBuffer);
-                if (bytesRead == -1) {
-                    disconnectClient(client);
-                    return null;
-                }
-                totalBytesRead += bytesRead;
-            }
-            lengthBuffer.flip();
-            int length = lengthBuffer.getInt();
-            if (length <= 0 || length > 1_000_000) {
-                logger.error("некорректная длина {} от {}", length, address);
-                disconnectClient(client);
-                return null;
-            }
-
-            ByteBuffer dataBuffer = ByteBuffer.allocate(length);
-            totalBytesRead = 0;
-            while (totalBytesRead < length) {
-                int bytesRead = client.read(dataBuffer);
-                if (bytesRead == -1) {
-                    disconnectClient(client);
-                    return null;
-                }
-                totalBytesRead += bytesRead;
+            if (connection.read(body -> onFrame(connection, body, key)) == -1) {
+                disconnectClient(key);
             }
-            dataBuffer.flip();
-            byte[] data = new byte[length];
-            dataBuffer.get(data);
+        } catch (IOException e) {
+            logger.error("ошибка чтения от клиента {}: {}", connection.address(), e.getMessage());
+            disconnectClient(key);
+        }
+    }
 
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(data);
-                 ObjectInputStream ois = new ObjectInputStream(bais)) {
-                return (Request) ois.readObject();
+    private void onFrame(ClientConnection connection, ByteBuffer body, SelectionKey key) throws IOException {
+        WireCodec codec = connection.codec();
+        if (codec == null) {
+            if (Protocol.isHandshake(body)) {
+                negotiate(connection, body);
+                return;
             }
-        } catch (SocketTimeoutException e) {
-            logger.error("таймаут от {}: {}", address, e.getMessage());
-            disconnectClient(client);
-            return null;
-        } catch (IOException | ClassNotFoundException e) {
-            logger.error("ошибка чтения от {}: {}", address, e.getMessage());
-            disconnectClient(client);
-            throw e;
+            codec = SerializationCodec.INSTANCE;
+            connection.setCodec(codec);
+            logger.info("клиент {} без согласования, используется сериализация java", connection.address());
         }
+        processClient(connection.channel(), codec.readRequest(body), key);
     }
 
-    private void processClient(SocketChannel client, Request request, SelectionKey key) {
-        new Thread(() -> {
-            try {
-                Response response;
-                String userId = request.getLogin();
-                boolean isAuthenticated = authenticatedUsers.containsKey(client);
-
-                if (request.getCommand().equals("login") && userId != null) {
-                    for (Map.Entry<SocketChannel, String> entry : authenticatedUsers.entrySet()) {
-                        if (entry.getValue().equals(userId) && !entry.getKey().equals(client)) {
-                            response = Response.error("пользователь " + userId + " уже авторизован");
-                            sendResponse(client, response, key);
-                            return;
-                        }
-                    }
-                }
-
-                if (request.getCommand().equals("login")) {
-                    if (dbManager.authenticateUser(userId, request.getPassword())) {
-                        authenticatedUsers.put(client, userId);
-                        response = Response.success("авторизация успешна");
-                        logger.info("пользователь {} авторизован", userId);
-                    } else {
-                        response = Response.error("неверный логин или пароль");
-                    }
-                } else if (request.getCommand().equals("register")) {
-                    if (dbManager.registerUser(userId, request.getPassword())) {
-                        authenticatedUsers.put(client, userId);
-                        response = Response.success("регистрация успешна");
-                        logger.info("пользователь {} зарегистрирован", userId);
-                    } else {
-                        response = Response.error("пользователь уже существует или ошибка регистрации");
-                    }
-                } else {
-                    response = CommandManager.executeRequest(request, isAuthenticated);
-                }
-                sendResponse(client, response, key);
-            } catch (Exception e) {
-                SocketAddress address = clientAddresses.getOrDefault(client, null);
-                logger.error("ошибка обработки запроса от {}: {}", address, e.getMessage());
-                sendResponse(client, Response.error("внутренняя ошибка сервера: " + e.getMessage()), key);
-            }
-        }).start();
+    private void negotiate(ClientConnection connection, ByteBuffer hello) throws IOException {
+        byte version = Protocol.chooseVersion(hello);
+        byte features = Protocol.chooseFeatures(hello);
+        connection.setCodec(Protocol.codecFor(version, features));
+        logger.info("клиент {} согласовал формат версии {}, возможности {}", connection.address(), version, features);
+        WireBuffer out = wireBufferPool.acquire().startFrame();
+        Protocol.writeAccept(version, features, out);
+        connection.send(out.finishFrame(), out);
     }
 
-    private void sendResponse(SocketChannel client, Response response, SelectionKey key) {
-        responderPool.submit(() -> {
-            try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
-                    oos.writeObject(response);
-                }
-                byte[] data = baos.toByteArray();
-                ByteBuffer buffer = ByteBuffer.allocate(4 + data.length);
-                buffer.putInt(data.length);
-                buffer.put(data);
-                buffer.flip();
-                while (buffer.hasRemaining()) {
-                    client.write(buffer);
-                }
-                client.register(key.selector(), SelectionKey.OP_READ);
-            } catch (IOException e) {
-                SocketAddress address = clientAddresses.getOrDefault(client, null);
-                logger.error("ошибка отправки ответа клиенту {}: {}", address, e.getMessage());
+    private void processClient(SocketChannel client, Request request, SelectionKey key) {
+        boolean accepted = requestExecutor.submit(client,
+                () -> sendResponse(requestHandler.handle(client, request), key),
+                requestHandler.isExclusive(request));
+        if (!accepted) {
+            logger.warn("запрос {} от {} отклонён: сервер перегружен", request.getCommand(), clientAddresses.get(client));
+            if (!requestHandler.canReject(request, requestExecutor.isIdle(client))) {
                 disconnectClient(key);
+                return;
             }
-        });
+            sendResponse(requestHandler.rejected(request), key);
+        }
     }
 
-    private void disconnectClient(SelectionKey key) {
+    // ответ собирается в рабочем потоке, а в канал его пишет реактор соединения
+    private void sendResponse(Response response, SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        WireBuffer out = wireBufferPool.acquire();
         try {
-            SocketChannel client = (SocketChannel) key.channel();
-            SocketAddress address = clientAddresses.getOrDefault(client, null);
-            authenticatedUsers.remove(client);
-            clientAddresses.remove(client);
-            client.close();
-            key.cancel();
-            logger.info("клиент {} отключен", address);
+            connection.codec().writeResponse(response, out.startFrame());
+            connection.send(out.finishFrame(), out);
         } catch (IOException e) {
-            logger.error("ошибка отключения клиента: {}", e.getMessage());
+            wireBufferPool.release(out);
+            logger.error("ошибка отправки ответа клиенту {}: {}", connection.address(), e.getMessage());
+            disconnectClient(key);
         }
     }
 
-    private void disconnectClient(SocketChannel client) {
+    private void disconnectClient(SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        SocketChannel client = connection.channel();
+        requestHandler.disconnected(client);
+        clientAddresses.remove(client);
+        requestExecutor.release(client);
+        key.cancel();
         try {
-            SocketAddress address = clientAddresses.getOrDefault(client, null);
-            authenticatedUsers.remove(client);
-            clientAddresses.remove(client);
-            client.close();
-            logger.info("клиент {} отключен", address);
+            connection.close();
+            logger.info("клиент {} отключен", connection.address());
         } catch (IOException e) {
             logger.error("ошибка отключения клиента: {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.vehicleServer.serverNetwork;
+
+import com.vehicleShared.network.WireBuffer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул прямых буферов для сборки ответов. Буфер берёт рабочий поток, а возвращает
+ * реактор, когда кадр целиком ушёл в канал. Непомерно разросшиеся буферы не сохраняются.
+ */
+public class WireBufferPool {
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private final int maxPooled;
+    private final Queue<WireBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public WireBufferPool(int initialCapacity, int maxRetainedCapacity, int maxPooled) {
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.maxPooled = maxPooled;
+    }
+
+    public WireBuffer acquire() {
+        WireBuffer buffer = free.poll();
+        if (buffer == null) {
+            return new WireBuffer(initialCapacity, true);
+        }
+        pooled.decrementAndGet();
+        return buffer.clear();
+    }
+
+    public void release(WireBuffer buffer) {
+        if (buffer == null || buffer.capacity() > maxRetainedCapacity) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
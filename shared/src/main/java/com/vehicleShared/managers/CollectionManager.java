@@ -1,38 +1,389 @@
 package com.vehicleShared.managers;
 
 import com.vehicleShared.model.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.sql.SQLException;
 
-public class CollectionManager extends ConcurrentHashMap<Long, Vehicle> {
+public class CollectionManager {
+    private static final int ID_BLOCK = 100;
+    private static final PowerStats EMPTY_STATS = new PowerStats();
     public final LocalDateTime initializationDate;
-    private final DbManager dbManager;
+    private final StorageBackend storage;
+    // колоночный режим, -Dcollection.columnar=true: ни машин-объектов, ни индексов на каждую машину
+    private final ColumnarVehicleStore columns;
+    private final VehicleStore store;
+    // владелец хранится в самой машине, а здесь какие машины у пользователя; в колоночном режиме null
+    private final Map<String, Set<Long>> ownedIds;
+    // отложенная запись, включается через -Ddb.writeBehind=true
+    private final WriteBehindQueue writeBehind;
+    // порядок изменений в памяти и в очереди должен совпадать; запросы мимо очереди
+    // (flush, SQL, правка памяти) идут под ним же, чтобы очередь их не обогнала
+    private final Object writeLock = new Object();
+    private final Queue<Long> reservedIds = new ArrayDeque<>();
+    // индекс мощности: машины по (мощность, id), для диапазонов и точных совпадений; в колоночном режиме null
+    private final ConcurrentSkipListMap<PowerKey, Vehicle> byPower;
+    // id по возрастанию для show, в обоих режимах
+    private final IdIndex byId = new IdIndex();
+    private final PowerStats stats = new PowerStats();
+    private final Map<String, PowerStats> userStats = new ConcurrentHashMap<>();
+    private volatile boolean writable = true;
 
-    public CollectionManager(DbManager dbManager) {
+    public CollectionManager(StorageBackend storage) {
         this.initializationDate = LocalDateTime.now();
-        this.dbManager = dbManager;
+        this.storage = storage;
+        this.columns = Boolean.getBoolean("collection.columnar") ? new ColumnarVehicleStore() : null;
+        this.store = columns != null ? columns : new LongVehicleMap();
+        this.ownedIds = columns != null ? null : new ConcurrentHashMap<>();
+        this.byPower = columns != null ? null : new ConcurrentSkipListMap<>();
+        this.writeBehind = Boolean.getBoolean("db.writeBehind")
+                ? new WriteBehindQueue(storage,
+                        Integer.getInteger("db.writeBehind.capacity", 10_000),
+                        Integer.getInteger("db.writeBehind.batch", 500),
+                        Long.getLong("db.writeBehind.linger.ms", 2))
+                : null;
     }
 
-    public synchronized void loadFromDb(String userId, boolean loadAll) throws SQLException {
-        clear();
-        for (Vehicle vehicle : dbManager.loadFromDb(userId, loadAll)) {
-            super.put(vehicle.getId(), vehicle);
+    public WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Дописывает в базу всё, что стоит в очереди отложенной записи.
+     */
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    /**
+     * Загружает всю таблицу один раз при старте сервера. Дальше коллекция остаётся
+     * единственной общей копией: каждое изменение сначала пишется в базу, затем сюда.
+     * <p>
+     * Если коллекция уже поднята из снимка, она сверяется с базой на месте: читатели
+     * всё время видят полную коллекцию, а не пустую.
+     */
+    public synchronized void load() throws SQLException {
+        if (isEmpty()) {
+            storage.loadVehicles(this::index);
+        } else {
+            VehicleStore loaded = new LongVehicleMap();
+            storage.loadVehicles((vehicle, owner) -> {
+                loaded.compute(vehicle.getId(), current -> vehicle);
+                Vehicle current = get(vehicle.getId());
+                String previous = current == null ? null : current.getOwner();
+                if (previous != null && !previous.equals(owner)) {
+                    unindex(vehicle.getId());
+                }
+                index(vehicle, owner);
+            });
+            List<Long> stale = new ArrayList<>();
+            store.forEach((id, vehicle) -> {
+                if (!loaded.containsKey(id)) {
+                    stale.add(id);
+                }
+            });
+            unindexAll(stale);
+        }
+        writable = true;
+    }
+
+    /**
+     * Поднимает коллекцию из снимка до подключения к базе. Изменения запрещены,
+     * пока {@link #load()} не сверит её с базой.
+     *
+     * @return время записи снимка
+     */
+    public synchronized long restore(Path snapshot, Map<String, String> users) throws IOException {
+        writable = false;
+        try {
+            return CollectionSnapshot.read(snapshot, users::put, this::index);
+        } catch (IOException | RuntimeException e) {
+            store.clear();
+            byId.clear();
+            if (columns == null) {
+                byPower.clear();
+                ownedIds.clear();
+            }
+            stats.reset();
+            userStats.clear();
+            writable = true;
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return число записанных машин
+     */
+    public int saveSnapshot(Path snapshot, Map<String, String> users) throws IOException {
+        return CollectionSnapshot.write(snapshot, users, consumer -> forEach((id, vehicle) -> {
+            if (vehicle.getOwner() != null) {
+                consumer.accept(vehicle, vehicle.getOwner());
+            }
+        }));
+    }
+
+    /**
+     * false, пока коллекция поднята из снимка и ещё не сверена с базой.
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    public Vehicle get(long id) {
+        return store.get(id);
+    }
+
+    public boolean containsKey(long id) {
+        return store.containsKey(id);
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public boolean isEmpty() {
+        return store.isEmpty();
+    }
+
+    /**
+     * Обход коллекции с примитивными id, без упаковки. Менять коллекцию из потребителя нельзя.
+     */
+    public void forEach(VehicleStore.EntryConsumer consumer) {
+        store.forEach(consumer);
+    }
+
+    public String storeType() {
+        return store.getClass().getSimpleName();
+    }
+
+    /**
+     * Владелец по коллекции в памяти, без запроса к базе.
+     */
+    public String ownerOf(long id) {
+        if (columns != null) {
+            return columns.ownerOf(id);
+        }
+        Vehicle vehicle = get(id);
+        return vehicle == null ? null : vehicle.getOwner();
+    }
+
+    /**
+     * Машины пользователя по индексу владельцев, без обхода всей коллекции.
+     */
+    public List<Vehicle> vehiclesOf(String userId) {
+        if (columns != null) {
+            return columns.vehiclesOf(userId);
+        }
+        Set<Long> ids = ownedIds(userId);
+        List<Vehicle> vehicles = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Vehicle vehicle = get(id);
+            if (vehicle != null) {
+                vehicles.add(vehicle);
+            }
+        }
+        return vehicles;
+    }
+
+    private Set<Long> ownedIds(String userId) {
+        Set<Long> ids = userId == null ? null : ownedIds.get(userId);
+        return ids == null ? Set.of() : ids;
+    }
+
+    private void index(Vehicle vehicle, String owner) {
+        vehicle.setOwner(owner);
+        store(vehicle.getId(), vehicle);
+        own(owner, vehicle.getId());
+    }
+
+    private Vehicle unindex(long id) {
+        Vehicle removed = drop(id);
+        if (removed != null) {
+            disown(removed.getOwner(), id);
+        }
+        return removed;
+    }
+
+    private void own(String owner, long id) {
+        if (ownedIds != null && owner != null) {
+            ownedIds.computeIfAbsent(owner, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private void disown(String owner, long id) {
+        Set<Long> ids = ownedIds == null || owner == null ? null : ownedIds.get(owner);
+        if (ids != null) {
+            ids.remove(id);
         }
     }
 
+    // запись в карту вместе с индексом мощности и агрегатами; compute держит ключ, пока они правятся
+    private Vehicle store(long id, Vehicle vehicle) {
+        Vehicle[] previous = {null};
+        store.compute(id, current -> {
+            if (current != null) {
+                forget(id, current);
+            } else {
+                byId.add(id);
+            }
+            remember(id, vehicle);
+            previous[0] = current;
+            return vehicle;
+        });
+        return previous[0];
+    }
+
+    /**
+     * Откат изменения, которое не записалось в базу: {@code previous} возвращается, только
+     * если под ключом всё ещё {@code expected}. null с любой стороны — машины нет, так
+     * откатываются и вставка, и удаление. Блокировку записи не берёт: вызывается из потока очереди.
+     */
+    private void revert(long id, Vehicle expected, Vehicle previous) {
+        boolean[] reverted = {false};
+        store.compute(id, current -> {
+            if (!store.isSame(current, expected)) {
+                return current;
+            }
+            if (current != null) {
+                forget(id, current);
+            }
+            if (previous != null) {
+                remember(id, previous);
+            }
+            if (current == null && previous != null) {
+                byId.add(id);
+            } else if (current != null && previous == null) {
+                byId.remove(id);
+            }
+            reverted[0] = true;
+            return previous;
+        });
+        if (reverted[0] && expected == null) {
+            own(previous.getOwner(), id);
+        } else if (reverted[0] && previous == null) {
+            disown(expected.getOwner(), id);
+        }
+    }
+
+    private Vehicle drop(long id) {
+        Vehicle[] removed = {null};
+        store.compute(id, current -> {
+            if (current == null) {
+                return null;
+            }
+            forget(id, current);
+            byId.remove(id);
+            removed[0] = current;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void remember(long id, Vehicle vehicle) {
+        if (byPower != null) {
+            byPower.put(new PowerKey(vehicle.getPower(), id), vehicle);
+        }
+        stats.add(vehicle);
+        if (vehicle.getOwner() != null) {
+            userStats.computeIfAbsent(vehicle.getOwner(), owner -> new PowerStats()).add(vehicle);
+        }
+    }
+
+    private void forget(long id, Vehicle vehicle) {
+        if (byPower != null) {
+            byPower.remove(new PowerKey(vehicle.getPower(), id));
+        }
+        stats.remove(vehicle);
+        if (vehicle.getOwner() != null) {
+            PowerStats owned = userStats.get(vehicle.getOwner());
+            if (owned != null) {
+                owned.remove(vehicle);
+            }
+        }
+    }
+
+    /**
+     * Агрегаты по всей коллекции, чтение за O(1).
+     */
+    public PowerStats stats() {
+        return stats;
+    }
+
+    /**
+     * Агрегаты по машинам пользователя; для пользователя без машин нулевые.
+     */
+    public PowerStats statsOf(String userId) {
+        PowerStats owned = userId == null ? null : userStats.get(userId);
+        return owned == null ? EMPTY_STATS : owned;
+    }
+
+    /**
+     * @return наименьшая мощность по индексу или null, если коллекция пуста
+     */
+    public Float minPower() {
+        if (columns != null) {
+            return columns.minPower();
+        }
+        Map.Entry<PowerKey, Vehicle> first = byPower.firstEntry();
+        return first == null ? null : first.getKey().power;
+    }
+
+    public Float maxPower() {
+        if (columns != null) {
+            return columns.maxPower();
+        }
+        Map.Entry<PowerKey, Vehicle> last = byPower.lastEntry();
+        return last == null ? null : last.getKey().power;
+    }
+
+    private static boolean isValid(Vehicle vehicle, String userId) {
+        return vehicle.getName() != null && !vehicle.getName().isEmpty() &&
+                vehicle.getCoordinates() != null && vehicle.getPower() > 0 &&
+                vehicle.getType() != null && vehicle.getFuelType() != null &&
+                userId != null;
+    }
+
     public boolean put(Vehicle vehicle, String userId) {
+        return put(vehicle, userId, Durability.COMMITTED);
+    }
+
+    /**
+     * При отложенной записи машина сразу попадает в коллекцию с id из зарезервированного
+     * блока, а в базу уходит через очередь; иначе сначала пишется в базу.
+     */
+    public boolean put(Vehicle vehicle, String userId, Durability durability) {
         try {
-            if (vehicle.getName() == null || vehicle.getName().isEmpty() ||
-                    vehicle.getCoordinates() == null || vehicle.getPower() <= 0 ||
-                    vehicle.getType() == null || vehicle.getFuelType() == null ||
-                    userId == null) {
+            if (!isValid(vehicle, userId)) {
                 return false; // невалидные данные
             }
-            if (dbManager.addVehicle(vehicle, userId)) {
-                super.put(vehicle.getId(), vehicle);
+            if (writeBehind != null) {
+                return await(enqueueInsert(vehicle, userId), durability);
+            }
+            if (storage.addVehicle(vehicle, userId)) {
+                index(vehicle, userId);
                 return true;
             }
         } catch (SQLException e) {
@@ -41,16 +392,90 @@ public class CollectionManager extends ConcurrentHashMap<Long, Vehicle> {
         return false;
     }
 
+    /**
+     * Пакетное добавление одной транзакцией.
+     *
+     * @return для каждой машины по порядку, добавлена ли она; невалидные пропускаются,
+     * а при ошибке базы не добавляется ни одна
+     */
+    public boolean[] putAll(List<Vehicle> vehicles, String userId) {
+        return putAll(vehicles, userId, Durability.COMMITTED);
+    }
+
+    public boolean[] putAll(List<Vehicle> vehicles, String userId, Durability durability) {
+        boolean[] added = new boolean[vehicles.size()];
+        List<Vehicle> valid = new ArrayList<>(vehicles.size());
+        for (int i = 0; i < vehicles.size(); i++) {
+            added[i] = isValid(vehicles.get(i), userId);
+            if (added[i]) {
+                valid.add(vehicles.get(i));
+            }
+        }
+        if (writeBehind != null) {
+            // сначала в очередь уходят все вставки, чтобы она сгруппировала их в пакеты, потом ждём разом
+            List<CompletableFuture<Void>> committed = new ArrayList<>(vehicles.size());
+            for (int i = 0; i < vehicles.size(); i++) {
+                CompletableFuture<Void> insert = null;
+                if (added[i]) {
+                    try {
+                        insert = enqueueInsert(vehicles.get(i), userId);
+                    } catch (SQLException e) {
+                        System.err.println("ошибка пакетного добавления: " + e.getMessage());
+                        added[i] = false;
+                    }
+                }
+                committed.add(insert);
+            }
+            for (int i = 0; i < vehicles.size(); i++) {
+                if (added[i]) {
+                    added[i] = await(committed.get(i), durability);
+                }
+            }
+            return added;
+        }
+        try {
+            storage.addVehicles(valid, userId);
+            for (Vehicle vehicle : valid) {
+                index(vehicle, userId);
+            }
+        } catch (SQLException e) {
+            System.err.println("ошибка пакетного добавления: " + e.getMessage());
+            Arrays.fill(added, false);
+        }
+        return added;
+    }
+
     public boolean update(long id, Vehicle vehicle, String userId) {
+        return update(id, vehicle, userId, Durability.COMMITTED);
+    }
+
+    public boolean update(long id, Vehicle vehicle, String userId, Durability durability) {
         try {
-            if (vehicle.getName() == null || vehicle.getName().isEmpty() ||
-                    vehicle.getCoordinates() == null || vehicle.getPower() <= 0 ||
-                    vehicle.getType() == null || vehicle.getFuelType() == null ||
-                    userId == null) {
+            if (!isValid(vehicle, userId)) {
                 return false;
             }
-            if (dbManager.canModify(id, userId) && dbManager.updateVehicle(id, vehicle, userId)) {
-                super.put(id, vehicle);
+            if (writeBehind != null) {
+                CompletableFuture<Void> committed;
+                synchronized (writeLock) {
+                    if (!userId.equals(ownerOf(id))) {
+                        return false;
+                    }
+                    vehicle.setId(id);
+                    vehicle.setOwner(userId);
+                    Vehicle previous = store(id, vehicle);
+                    // ждём уже с откатом: к ответу об ошибке прежняя машина должна быть на месте
+                    committed = writeBehind.update(id, vehicle, userId).whenComplete((ignored, e) -> {
+                        if (e != null && previous != null) {
+                            revert(id, vehicle, previous); // вернуть прежнюю, если её ещё не сменили
+                        }
+                    });
+                }
+                return await(committed, durability);
+            }
+            if (userId.equals(ownerOf(id)) && storage.updateVehicle(id, vehicle, userId)) {
+                vehicle.setId(id);
+                vehicle.setOwner(userId);
+                store(id, vehicle);
                 return true;
             }
         } catch (SQLException e) {
@@ -59,11 +484,99 @@ public class CollectionManager extends ConcurrentHashMap<Long, Vehicle> {
         return false;
     }
 
-    public Vehicle remove(Object key, String userId) {
+    /**
+     * Удаляет машины пользователя с id больше заданного: один запрос к базе,
+     * затем коллекция обновляется по вернувшимся id.
+     *
+     * @return id удалённых машин
+     */
+    public List<Long> removeGreaterKey(long id, String userId) throws SQLException {
+        if (columns != null ? !columns.ownsAbove(id, userId) : ownedIds(userId).stream().noneMatch(owned -> owned > id)) {
+            return List.of();
+        }
+        return removeDirect(() -> storage.removeVehiclesAbove(id, userId));
+    }
+
+    public List<Long> removeByPower(float power, String userId) throws SQLException {
+        boolean owns = columns != null
+                ? columns.ownsWithPower(power, userId)
+                : withPower(power).stream().anyMatch(vehicle -> userId != null && userId.equals(vehicle.getOwner()));
+        if (!owns) {
+            return List.of(); // по индексу видно, что удалять нечего, в базу не ходим
+        }
+        return removeDirect(() -> storage.removeVehiclesByPower(power, userId));
+    }
+
+    public List<Long> removeAllOf(String userId) throws SQLException {
+        if (statsOf(userId).count() == 0) {
+            return List.of();
+        }
+        return removeDirect(() -> storage.removeVehiclesOf(userId));
+    }
+
+    // без блокировки обновление, вставшее в очередь между flush и удалением, легло бы в базу после него
+    private List<Long> removeDirect(StorageCall<List<Long>> removal) throws SQLException {
+        synchronized (writeLock) {
+            flush();
+            return unindexAll(removal.call());
+        }
+    }
+
+    private List<Long> unindexAll(List<Long> ids) {
+        for (Long id : ids) {
+            unindex(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Заменяет машину пользователя, если новая мощность меньше текущей в базе.
+     *
+     * @return false, если машина чужая, не найдена или новая мощность не меньше
+     */
+    public boolean replaceIfLower(long id, Vehicle vehicle, String userId) throws SQLException {
+        Vehicle current = get(id);
+        if (current == null || userId == null || !userId.equals(ownerOf(id))
+                || !(vehicle.getPower() < current.getPower())) {
+            return false; // заведомо не заменится, чужую машину в базу и не пробуем
+        }
+        synchronized (writeLock) {
+            flush(); // мощность окончательно сравнивает база, она должна видеть всё из очереди
+            if (storage.replaceVehicleIfLower(id, vehicle, userId)) {
+                vehicle.setId(id);
+                vehicle.setOwner(userId);
+                store(id, vehicle);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public Vehicle remove(long id, String userId) {
+        return remove(id, userId, Durability.COMMITTED);
+    }
+
+    public Vehicle remove(long id, String userId, Durability durability) {
         try {
-            Long id = (Long) key;
-            if (dbManager.canModify(id, userId) && dbManager.removeVehicle(id, userId)) {
-                return super.remove(key);
+            if (writeBehind != null) {
+                Vehicle removed;
+                CompletableFuture<Void> committed;
+                synchronized (writeLock) {
+                    if (userId == null || !userId.equals(ownerOf(id))) {
+                        return null;
+                    }
+                    removed = unindex(id);
+                    committed = writeBehind.delete(id, userId).whenComplete((ignored, e) -> {
+                        if (e != null && removed != null) {
+                            revert(id, null, removed); // вернуть, если id ещё не занят
+                        }
+                    });
+                }
+                return await(committed, durability) ? removed : null;
+            }
+            // владелец по памяти, чужую машину в базу и не пробуем; delete сам ограничен владельцем
+            if (userId != null && userId.equals(ownerOf(id)) && storage.removeVehicle(id, userId)) {
+                return unindex(id);
             }
         } catch (SQLException e) {
             System.err.println("ошибка удаления из базы: " + e.getMessage());
@@ -71,12 +584,86 @@ public class CollectionManager extends ConcurrentHashMap<Long, Vehicle> {
         return null;
     }
 
-    public String getVehiclesByMinPower(float minimumPower) {
-        return entrySet()
-                .stream()
-                .filter(entry -> entry.getValue().getPower() >= minimumPower)
-                .map(entry -> entry.getKey() + " : " + entry.getValue().toString())
-                .collect(Collectors.joining("\n"));
+    private CompletableFuture<Void> enqueueInsert(Vehicle vehicle, String userId) throws SQLException {
+        synchronized (writeLock) {
+            if (reservedIds.isEmpty()) {
+                reservedIds.addAll(storage.reserveIds(ID_BLOCK));
+            }
+            vehicle.setId(reservedIds.poll());
+            index(vehicle, userId);
+            // ждут уже стадию с откатом: к ответу об ошибке машины в коллекции не будет
+            return writeBehind.insert(vehicle, userId).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    revert(vehicle.getId(), vehicle, null); // убрать, если её ещё не сменили
+                }
+            });
+        }
+    }
+
+    // при ENQUEUED подтверждаем сразу, при COMMITTED ждём фиксации пакета
+    private static boolean await(CompletableFuture<Void> committed, Durability durability) {
+        if (durability == Durability.ENQUEUED) {
+            return !committed.isCompletedExceptionally();
+        }
+        try {
+            committed.join();
+            return true;
+        } catch (CompletionException e) {
+            System.err.println("изменение не записано в базу: " + e.getCause().getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Следующие {@code limit} элементов по возрастанию id после {@code afterId}.
+     * Идёт по индексу id: O(log n + limit). Машина, удалённая между чтением индекса
+     * и коллекции, просто пропускается.
+     */
+    public List<Vehicle> pageById(long afterId, int limit) {
+        long[] ids = byId.after(afterId, limit);
+        List<Vehicle> page = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Vehicle vehicle = store.get(id);
+            if (vehicle != null) {
+                page.add(vehicle);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Следующие {@code limit} элементов с мощностью не меньше {@code minimumPower}
+     * в порядке (мощность, id) после позиции ({@code afterPower}, {@code afterId}).
+     * Идёт по индексу мощности: O(log n + limit), без обхода коллекции и сортировки.
+     * В колоночном режиме индекса нет, и это один проход по столбцам мощности и id.
+     */
+    public List<Vehicle> pageByPower(float minimumPower, float afterPower, long afterId, int limit) {
+        if (columns != null) {
+            return columns.pageByPower(minimumPower, afterPower, afterId, limit);
+        }
+        PowerKey floor = new PowerKey(minimumPower, Long.MIN_VALUE);
+        PowerKey after = new PowerKey(afterPower, afterId);
+        NavigableMap<PowerKey, Vehicle> tail = after.compareTo(floor) < 0
+                ? byPower.tailMap(floor, true)
+                : byPower.tailMap(after, false);
+        List<Vehicle> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Vehicle vehicle : tail.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(vehicle);
+        }
+        return page;
+    }
+
+    /**
+     * Машины ровно с такой мощностью, по возрастанию id.
+     */
+    public Collection<Vehicle> withPower(float power) {
+        if (columns != null) {
+            return columns.withPower(power);
+        }
+        return byPower.subMap(new PowerKey(power, Long.MIN_VALUE), true, new PowerKey(power, Long.MAX_VALUE), true).values();
     }
 
     public static Vehicle requestVehicleInformation(Scanner scanner, long id) {
@@ -98,7 +685,28 @@ public class CollectionManager extends ConcurrentHashMap<Long, Vehicle> {
         return requestVehicleInformation(scanner, 0L); // id игнорируется, база задаёт
     }
 
-    public DbManager getDbManager() {
-        return dbManager;
+    public StorageBackend getStorage() {
+        return storage;
+    }
+
+    @FunctionalInterface
+    private interface StorageCall<T> {
+        T call() throws SQLException;
+    }
+
+    private static final class PowerKey implements Comparable<PowerKey> {
+        private final float power;
+        private final long id;
+
+        private PowerKey(float power, long id) {
+            this.power = power;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(PowerKey other) {
+            int compared = Float.compare(power, other.power);
+            return compared != 0 ? compared : Long.compare(id, other.id);
+        }
     }
 }
\ No newline at end of file
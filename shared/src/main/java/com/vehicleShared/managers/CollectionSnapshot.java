@@ -0,0 +1,154 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.Vehicle;
+import com.vehicleShared.network.BinaryCodec;
+import com.vehicleShared.network.WireBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный снимок коллекции для тёплого старта: машины с владельцами и хэши паролей.
+ * <p>
+ * Формат: заголовок (магия, версия, время записи), записи с байтом вида впереди, нулевой
+ * байт конца и crc32 всего предыдущего. Снимок пишется во временный файл и подменяет
+ * старый атомарно, а читается через отображение в память без копирования файла.
+ */
+public final class CollectionSnapshot {
+    private static final int MAGIC = 0x5643534e; // "VCSN"
+    private static final byte VERSION = 1;
+    private static final byte END = 0;
+    private static final byte USER = 1;
+    private static final byte VEHICLE = 2;
+    private static final int CHUNK = 64 * 1024;
+
+    private CollectionSnapshot() {
+    }
+
+    /**
+     * @param vehicles обходит машины вместе с владельцами
+     * @return число записанных машин
+     */
+    public static int write(Path file, Map<String, String> users,
+                            Consumer<BiConsumer<Vehicle, String>> vehicles) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        int[] count = {0};
+        Files.deleteIfExists(temporary);
+        try (FileChannel out = openPrivate(temporary)) {
+            WireBuffer buffer = new WireBuffer(CHUNK + 1024);
+            buffer.putInt(MAGIC).putByte(VERSION).putLong(System.currentTimeMillis());
+            for (Map.Entry<String, String> user : users.entrySet()) {
+                buffer.putByte(USER).putString(user.getKey()).putString(user.getValue());
+                drain(buffer, out, crc, false);
+            }
+            IOException[] failure = {null};
+            vehicles.accept((vehicle, owner) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                buffer.putByte(VEHICLE).putString(owner);
+                BinaryCodec.writeVehicle(vehicle, buffer);
+                count[0]++;
+                try {
+                    drain(buffer, out, crc, false);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            buffer.putByte(END);
+            drain(buffer, out, crc, true);
+            buffer.putInt((int) crc.getValue());
+            write(buffer, out);
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count[0];
+    }
+
+    /**
+     * Проверяет контрольную сумму и отдаёт содержимое снимка потребителям.
+     *
+     * @return время записи снимка в миллисекундах эпохи
+     * @throws IOException если файл не снимок или повреждён
+     */
+    public static long read(Path file, BiConsumer<String, String> users, BiConsumer<Vehicle, String> vehicles) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < 18 || size > Integer.MAX_VALUE) {
+                throw new IOException("файл " + file + " не похож на снимок");
+            }
+            ByteBuffer snapshot = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(snapshot.slice(0, (int) size - 4));
+            if ((int) crc.getValue() != snapshot.getInt((int) size - 4) || snapshot.getInt() != MAGIC || snapshot.get() != VERSION) {
+                throw new IOException("снимок " + file + " повреждён или другой версии");
+            }
+            long savedAt = snapshot.getLong();
+            byte kind;
+            while ((kind = snapshot.get()) != END) {
+                if (kind == USER) {
+                    users.accept(BinaryCodec.getString(snapshot), BinaryCodec.getString(snapshot));
+                } else if (kind == VEHICLE) {
+                    String owner = BinaryCodec.getString(snapshot);
+                    vehicles.accept(BinaryCodec.readVehicle(snapshot), owner);
+                } else {
+                    throw new IOException("неизвестная запись снимка " + kind);
+                }
+            }
+            return savedAt;
+        }
+    }
+
+    private static void drain(WireBuffer buffer, FileChannel out, CRC32 crc, boolean force) throws IOException {
+        if (!force && buffer.position() < CHUNK) {
+            return;
+        }
+        crc.update(buffer.view(0, buffer.position()));
+        write(buffer, out);
+    }
+
+    // в снимке хэши паролей: файл читает и пишет только владелец, права переживут ATOMIC_MOVE
+    private static FileChannel openPrivate(Path file) throws IOException {
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return FileChannel.open(file, options,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        FileChannel channel = FileChannel.open(file, options);
+        File created = file.toFile();
+        boolean restricted = created.setReadable(false, false) && created.setReadable(true, true)
+                && created.setWritable(false, false) && created.setWritable(true, true);
+        if (!restricted) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw new IOException("не удалось закрыть снимок от чужих пользователей");
+        }
+        return channel;
+    }
+
+    private static void write(WireBuffer buffer, FileChannel out) throws IOException {
+        ByteBuffer bytes = buffer.view(0, buffer.position());
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        buffer.clear();
+    }
+}
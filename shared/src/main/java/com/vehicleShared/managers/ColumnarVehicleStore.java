@@ -0,0 +1,466 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.Coordinates;
+import com.vehicleShared.model.FuelType;
+import com.vehicleShared.model.Vehicle;
+import com.vehicleShared.model.VehicleType;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Колоночное хранилище: каждое поле машины — свой примитивный массив, строка i всех
+ * массивов — одна машина. Названия лежат столбцом строк, владельцы — кодами словаря, тип
+ * и топливо — ординалами, дата создания — миллисекундами эпохи. Сканы по мощности и владельцу идут
+ * подряд по массивам, без обхода графа объектов.
+ * <p>
+ * Строки плотные: на место удалённой переезжает последняя. Машины наружу отдаются копиями,
+ * собранными из столбцов, поэтому {@link #isSame} сравнивает содержимое. Дата при этом
+ * теряет точность меньше миллисекунды и возвращается в часовом поясе сервера.
+ */
+public final class ColumnarVehicleStore implements VehicleStore {
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+    private static final FuelType[] FUEL_TYPES = FuelType.values();
+    private static final int MIN_CAPACITY = 16;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Dictionary owners = new Dictionary();
+    private long[] ids;
+    private float[] powers;
+    private float[] xs;
+    private int[] ys;
+    private long[] created;
+    private byte[] types;
+    private byte[] fuels;
+    private String[] names;
+    private int[] ownerCodes;
+    private volatile int size;
+    // id -> строка на открытой адресации, в слоте хранится строка + 1, 0 — пусто
+    private long[] slotIds;
+    private int[] slotRows;
+
+    public ColumnarVehicleStore() {
+        allocate(MIN_CAPACITY);
+    }
+
+    @Override
+    public Vehicle get(long id) {
+        long stamp = lock.readLock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? null : materialize(row);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsKey(long id) {
+        long stamp = lock.readLock();
+        try {
+            return rowOf(id) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Vehicle compute(long id, UnaryOperator<Vehicle> remapping) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(id);
+            int row = slotRows[slot] - 1;
+            Vehicle next = remapping.apply(row < 0 ? null : materialize(row));
+            if (next == null) {
+                if (row >= 0) {
+                    delete(slot, row);
+                }
+            } else if (row >= 0) {
+                write(row, id, next);
+            } else {
+                append(slot, id, next);
+            }
+            return next;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Весь обход идёт под одной блокировкой чтения: при удалении строки переезжают, и только
+     * так каждая машина встретится ровно один раз. Запись ждёт конца обхода.
+     */
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        long stamp = lock.readLock();
+        try {
+            for (int row = 0; row < size; row++) {
+                consumer.accept(ids[row], materialize(row));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            allocate(MIN_CAPACITY);
+            owners.clear();
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean isSame(Vehicle stored, Vehicle vehicle) {
+        if (stored == vehicle) {
+            return true;
+        }
+        if (stored == null || vehicle == null) {
+            return false;
+        }
+        Coordinates a = stored.getCoordinates();
+        Coordinates b = vehicle.getCoordinates();
+        return stored.getId() == vehicle.getId() &&
+                Float.compare(stored.getPower(), vehicle.getPower()) == 0 &&
+                Objects.equals(stored.getName(), vehicle.getName()) &&
+                (a == null ? b == null : b != null && Float.compare(a.getX(), b.getX()) == 0 && a.getY() == b.getY()) &&
+                stored.getType() == vehicle.getType() && stored.getFuelType() == vehicle.getFuelType() &&
+                Objects.equals(stored.getOwner(), vehicle.getOwner()) &&
+                epochMillis(stored.getCreationDate()) == epochMillis(vehicle.getCreationDate());
+    }
+
+    public String ownerOf(long id) {
+        long stamp = lock.readLock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? null : owners.value(ownerCodes[row]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Та же выдача, что у индекса мощности в {@link CollectionManager#pageByPower}, но одним
+     * проходом по столбцам мощности и id.
+     */
+    public List<Vehicle> pageByPower(float minimumPower, float afterPower, long afterId, int limit) {
+        return select(row -> compare(row, minimumPower, Long.MIN_VALUE) >= 0 && compare(row, afterPower, afterId) > 0,
+                (a, b) -> compare(a, powers[b], ids[b]), limit);
+    }
+
+    /**
+     * Машины ровно с такой мощностью, по возрастанию id.
+     */
+    public List<Vehicle> withPower(float power) {
+        long stamp = lock.readLock();
+        try {
+            List<Vehicle> vehicles = collect(row -> Float.compare(powers[row], power) == 0);
+            vehicles.sort(Comparator.comparingLong(Vehicle::getId));
+            return vehicles;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<Vehicle> vehiclesOf(String owner) {
+        long stamp = lock.readLock();
+        try {
+            int code = owners.find(owner);
+            return code < 0 ? new ArrayList<>() : collect(row -> ownerCodes[row] == code);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean ownsAbove(long id, String owner) {
+        return owns(owner, row -> ids[row] > id);
+    }
+
+    public boolean ownsWithPower(float power, String owner) {
+        return owns(owner, row -> Float.compare(powers[row], power) == 0);
+    }
+
+    /**
+     * @return наименьшая мощность или null, если строк нет
+     */
+    public Float minPower() {
+        long stamp = lock.readLock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            float min = powers[0];
+            for (int row = 1; row < size; row++) {
+                min = Math.min(min, powers[row]);
+            }
+            return min;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Float maxPower() {
+        long stamp = lock.readLock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            float max = powers[0];
+            for (int row = 1; row < size; row++) {
+                max = Math.max(max, powers[row]);
+            }
+            return max;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean owns(String owner, IntPredicate filter) {
+        long stamp = lock.readLock();
+        try {
+            int code = owners.find(owner);
+            if (code < 0) {
+                return false;
+            }
+            for (int row = 0; row < size; row++) {
+                if (ownerCodes[row] == code && filter.test(row)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // вызывается под блокировкой чтения
+    private List<Vehicle> collect(IntPredicate filter) {
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (filter.test(row)) {
+                vehicles.add(materialize(row));
+            }
+        }
+        return vehicles;
+    }
+
+    // куча на limit строк с худшей на вершине; в неё попадают только строки лучше вершины
+    private List<Vehicle> select(IntPredicate filter, Comparator<Integer> order, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        long stamp = lock.readLock();
+        try {
+            PriorityQueue<Integer> page = new PriorityQueue<>(Math.min(limit, 1024) + 1, order.reversed());
+            for (int row = 0; row < size; row++) {
+                if (filter.test(row) && (page.size() < limit || order.compare(row, page.peek()) < 0)) {
+                    page.add(row);
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                }
+            }
+            Integer[] rows = page.toArray(new Integer[0]);
+            Arrays.sort(rows, order);
+            List<Vehicle> result = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                result.add(materialize(row));
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int compare(int row, float power, long id) {
+        int compared = Float.compare(powers[row], power);
+        return compared != 0 ? compared : Long.compare(ids[row], id);
+    }
+
+    private Vehicle materialize(int row) {
+        Vehicle vehicle = new Vehicle(ids[row],
+                Float.isNaN(xs[row]) ? null : new Coordinates(xs[row], ys[row]),
+                created[row] == NO_DATE ? null : ZonedDateTime.ofInstant(Instant.ofEpochMilli(created[row]), zone),
+                names[row], powers[row],
+                types[row] < 0 ? null : VEHICLE_TYPES[types[row]],
+                fuels[row] < 0 ? null : FUEL_TYPES[fuels[row]]);
+        vehicle.setOwner(owners.value(ownerCodes[row]));
+        return vehicle;
+    }
+
+    private void write(int row, long id, Vehicle vehicle) {
+        Coordinates coordinates = vehicle.getCoordinates();
+        ids[row] = id;
+        powers[row] = vehicle.getPower();
+        xs[row] = coordinates == null ? Float.NaN : coordinates.getX();
+        ys[row] = coordinates == null ? 0 : coordinates.getY();
+        created[row] = epochMillis(vehicle.getCreationDate());
+        types[row] = (byte) (vehicle.getType() == null ? -1 : vehicle.getType().ordinal());
+        fuels[row] = (byte) (vehicle.getFuelType() == null ? -1 : vehicle.getFuelType().ordinal());
+        names[row] = vehicle.getName();
+        ownerCodes[row] = owners.code(vehicle.getOwner());
+    }
+
+    private void append(int slot, long id, Vehicle vehicle) {
+        if (size == ids.length) {
+            grow(ids.length << 1);
+        }
+        int row = size;
+        write(row, id, vehicle);
+        slotIds[slot] = id;
+        slotRows[slot] = row + 1;
+        size = row + 1;
+        if (size > slotIds.length - (slotIds.length >>> 2)) {
+            rehash(slotIds.length << 1);
+        }
+    }
+
+    // на место удалённой строки переезжает последняя, дырка в индексе закрывается сдвигом назад
+    private void delete(int slot, int row) {
+        int last = size - 1;
+        if (row != last) {
+            ids[row] = ids[last];
+            powers[row] = powers[last];
+            xs[row] = xs[last];
+            ys[row] = ys[last];
+            created[row] = created[last];
+            types[row] = types[last];
+            fuels[row] = fuels[last];
+            names[row] = names[last];
+            ownerCodes[row] = ownerCodes[last];
+            slotRows[slotOf(ids[row])] = row + 1;
+        }
+        names[last] = null;
+        size = last;
+        int mask = slotIds.length - 1;
+        int gap = slot;
+        for (int i = (slot + 1) & mask; slotRows[i] != 0; i = (i + 1) & mask) {
+            int home = hash(slotIds[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                slotIds[gap] = slotIds[i];
+                slotRows[gap] = slotRows[i];
+                gap = i;
+            }
+        }
+        slotIds[gap] = 0;
+        slotRows[gap] = 0;
+    }
+
+    private int rowOf(long id) {
+        return slotRows[slotOf(id)] - 1;
+    }
+
+    // слот с этим id или пустой слот, куда его вставлять
+    private int slotOf(long id) {
+        int mask = slotIds.length - 1;
+        int i = hash(id) & mask;
+        while (slotRows[i] != 0 && slotIds[i] != id) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        powers = new float[capacity];
+        xs = new float[capacity];
+        ys = new int[capacity];
+        created = new long[capacity];
+        types = new byte[capacity];
+        fuels = new byte[capacity];
+        names = new String[capacity];
+        ownerCodes = new int[capacity];
+        slotIds = new long[capacity * 2];
+        slotRows = new int[capacity * 2];
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        powers = Arrays.copyOf(powers, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        created = Arrays.copyOf(created, capacity);
+        types = Arrays.copyOf(types, capacity);
+        fuels = Arrays.copyOf(fuels, capacity);
+        names = Arrays.copyOf(names, capacity);
+        ownerCodes = Arrays.copyOf(ownerCodes, capacity);
+    }
+
+    private void rehash(int capacity) {
+        slotIds = new long[capacity];
+        slotRows = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            int slot = slotOf(ids[row]);
+            slotIds[slot] = ids[row];
+            slotRows[slot] = row + 1;
+        }
+    }
+
+    private static long epochMillis(ZonedDateTime date) {
+        return date == null ? NO_DATE : date.toInstant().toEpochMilli();
+    }
+
+    private static int hash(long id) {
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    // коды только растут: логин без машин остаётся до clear, но логинов не больше, чем пользователей
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[MIN_CAPACITY];
+
+        private int code(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, code << 1);
+                }
+                values[code] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        private int find(String value) {
+            Integer code = value == null ? null : codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        private String value(int code) {
+            return code < 0 ? null : values[code];
+        }
+
+        private void clear() {
+            codes.clear();
+            values = new String[MIN_CAPACITY];
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.vehicleShared.managers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул соединений с базой. Соединение выдаётся в аренду на время одного обращения
+ * и возвращается закрытием {@link Lease}. Число соединений ограничено сверху,
+ * ждать свободного можно не дольше таймаута аренды.
+ * <p>
+ * Соединение, пролежавшее без дела дольше {@link #VALIDATE_AFTER_IDLE_MILLIS}, перед
+ * выдачей проверяется; только что возвращённое отдаётся сразу, чтобы не тратить
+ * лишний запрос к базе на каждую аренду. Аренды, которые держат дольше порога,
+ * пишутся в лог с потоком-арендатором; стек места, где их взяли, снимается только
+ * с {@code -Ddb.pool.leak.trace=true}, на каждой аренде он дорог.
+ * <p>
+ * У каждого соединения свой кэш подготовленных запросов по тексту SQL: горячие запросы
+ * разбираются один раз на соединение. Кэшированные запросы закрывает пул, при возврате
+ * соединения он же закрывает забытые результаты.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 1000;
+    private static final long IDLE_TIMEOUT_MILLIS = 60_000;
+    private static final long WATCHDOG_PERIOD_MILLIS = 5000;
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.pool.statement.cache", 64);
+    private static final boolean LEAK_TRACE = Boolean.getBoolean("db.pool.leak.trace");
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final long leaseTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final Semaphore permits;
+    // свежевозвращённые в начале: берём самые тёплые, а закрываем самые старые с конца
+    private final Deque<Pooled> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ScheduledExecutorService watchdog;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long leaseTimeoutMillis, long leakThresholdMillis) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+        try {
+            for (int i = 0; i < minSize; i++) {
+                idle.addFirst(open());
+            }
+        } catch (SQLException e) {
+            closeIdle();
+            throw e;
+        }
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleAtFixedRate(this::maintain, WATCHDOG_PERIOD_MILLIS, WATCHDOG_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        log.info("пул соединений открыт: минимум {}, максимум {}", minSize, maxSize);
+    }
+
+    /**
+     * @throws SQLTransientConnectionException если свободного соединения не нашлось за таймаут аренды
+     */
+    public Lease borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("пул соединений закрыт");
+        }
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(leaseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("нет свободного соединения за " + leaseTimeoutMillis + " мс");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("ожидание соединения прервано");
+        } finally {
+            waiting.decrementAndGet();
+        }
+        try {
+            Lease lease = new Lease(take());
+            leases.add(lease);
+            return lease;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int active() {
+        return leases.size();
+    }
+
+    public int idle() {
+        return idle.size();
+    }
+
+    public int waiting() {
+        return waiting.get();
+    }
+
+    public int total() {
+        return total.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return "соединений: всего " + total() + ", занято " + active() + ", свободно " + idle() + ", ожидают " + waiting();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        watchdog.shutdownNow();
+        closeIdle();
+        // занятые закроются при возврате
+        log.info("пул соединений закрыт, в аренде осталось {}", active());
+    }
+
+    private Pooled take() throws SQLException {
+        Pooled candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - candidate.since < VALIDATE_AFTER_IDLE_MILLIS || isValid(candidate.connection)) {
+                return candidate;
+            }
+            log.warn("соединение из пула не прошло проверку и закрыто");
+            discard(candidate);
+        }
+        return open();
+    }
+
+    private void release(Lease lease) {
+        leases.remove(lease);
+        Pooled pooled = lease.pooled;
+        Connection connection = pooled.connection;
+        try {
+            if (closed || connection.isClosed()) {
+                discard(pooled);
+            } else {
+                pooled.closeResults();
+                // незавершённая транзакция не должна достаться следующему арендатору
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                pooled.since = System.currentTimeMillis();
+                idle.addFirst(pooled);
+            }
+        } catch (SQLException e) {
+            log.warn("соединение не удалось вернуть в пул: {}", e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Pooled open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        connection.setAutoCommit(true);
+        total.incrementAndGet();
+        return new Pooled(connection);
+    }
+
+    private void discard(Pooled pooled) {
+        total.decrementAndGet();
+        pooled.closeStatements();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            log.debug("ошибка закрытия соединения: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void closeIdle() {
+        Pooled candidate;
+        while ((candidate = idle.pollLast()) != null) {
+            discard(candidate);
+        }
+    }
+
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        while (total.get() > minSize) {
+            Pooled oldest = idle.peekLast();
+            if (oldest == null || now - oldest.since < IDLE_TIMEOUT_MILLIS || !idle.removeLastOccurrence(oldest)) {
+                break;
+            }
+            discard(oldest);
+        }
+        if (leakThresholdMillis > 0) {
+            for (Lease lease : leases) {
+                if (now - lease.borrowedAt > leakThresholdMillis && lease.reported.compareAndSet(false, true)) {
+                    log.warn("соединение удерживается {} мс потоком {}, возможна утечка",
+                            now - lease.borrowedAt, lease.thread, lease.origin);
+                }
+            }
+        }
+        log.debug("пул: {}", this);
+    }
+
+    /**
+     * Соединение вместе с его кэшем запросов. В каждый момент им владеет не больше
+     * одного арендатора, поэтому кэш не синхронизирован.
+     */
+    private static final class Pooled {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+        private final List<PreparedStatement> used = new ArrayList<>();
+        private volatile long since = System.currentTimeMillis();
+
+        private Pooled(Connection connection) {
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+            PreparedStatement statement = statements.get(key);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql, autoGeneratedKeys);
+                statements.put(key, statement);
+            } else {
+                statement.clearParameters();
+            }
+            used.add(statement);
+            return statement;
+        }
+
+        // результаты, которые арендатор не закрыл сам
+        private void closeResults() throws SQLException {
+            for (PreparedStatement statement : used) {
+                if (!statement.isClosed()) {
+                    statement.clearBatch();
+                    ResultSet results = statement.getResultSet();
+                    if (results != null) {
+                        results.close();
+                    }
+                }
+            }
+            used.clear();
+        }
+
+        private void closeStatements() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            used.clear();
+        }
+
+        private static void closeQuietly(Statement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.debug("ошибка закрытия запроса: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Аренда соединения; закрытие возвращает его в пул, повторное закрытие ничего не делает.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Pooled pooled;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final String thread = Thread.currentThread().getName();
+        private final Throwable origin;
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        private Lease(Pooled pooled) {
+            this.pooled = pooled;
+            this.origin = LEAK_TRACE && leakThresholdMillis > 0 ? new Throwable("аренда соединения") : null;
+        }
+
+        public Connection connection() {
+            return pooled.connection;
+        }
+
+        /**
+         * Подготовленный запрос из кэша соединения. Закрывать его не нужно:
+         * он переживает аренду и закрывается пулом.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return pooled.prepare(sql, Statement.NO_GENERATED_KEYS);
+        }
+
+        public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            return pooled.prepare(sql, autoGeneratedKeys);
+        }
+
+        @Override
+        public void close() {
+            if (returned.compareAndSet(false, true)) {
+                release(this);
+            }
+        }
+    }
+}
@@ -5,30 +5,63 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
-import java.time.ZonedDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.security.MessageDigest;
 import java.nio.charset.StandardCharsets;
 
-public class DbManager {
+public class DbManager implements StorageBackend {
     private static final Logger log = LoggerFactory.getLogger(DbManager.class);
-    private Connection db;
+    private static final int POOL_MIN_SIZE = Integer.getInteger("db.pool.min", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("db.pool.max", 16);
+    private static final long LEASE_TIMEOUT_MILLIS = Long.getLong("db.pool.lease.timeout.ms", 5000);
+    private static final long LEAK_THRESHOLD_MILLIS = Long.getLong("db.pool.leak.threshold.ms", 30_000);
+    private static final int INSERT_BATCH_SIZE = 500;
+    // порядок колонок важен: загрузка читает их по номеру
+    private static final String SELECT_VEHICLES = "select id, name, coordinates_x, coordinates_y, creation_date, engine_power, vehicle_type, fuel_type, user_id from s466080.vehicles";
+    private static final int LOAD_FETCH_SIZE = Integer.getInteger("db.load.fetch.size", 5000);
+    private static final long OFFLINE_LOGIN_TTL_MILLIS = Long.getLong("db.offline.login.ttl.ms", 3_600_000);
+    private static final Map<String, VehicleType> VEHICLE_TYPES = byName(VehicleType.values());
+    private static final Map<String, FuelType> FUEL_TYPES = byName(FuelType.values());
+    private static final String INSERT_VEHICLE = "insert into s466080.vehicles (name, coordinates_x, coordinates_y, creation_date, engine_power, vehicle_type, fuel_type, user_id) values (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_VEHICLE_WITH_ID = "insert into s466080.vehicles (name, coordinates_x, coordinates_y, creation_date, engine_power, vehicle_type, fuel_type, user_id, id) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_VEHICLE = "update s466080.vehicles set name = ?, coordinates_x = ?, coordinates_y = ?, creation_date = ?, engine_power = ?, vehicle_type = ?, fuel_type = ? where id = ? and user_id = ?";
+    private volatile ConnectionPool pool;
+    private volatile Map<String, String> offlineUsers = Map.of();
+    private volatile long offlineUntilNanos;
 
     public boolean isDbConnected() {
-        try {
-            return db != null && !db.isClosed() && db.isValid(2);
-        } catch (SQLException e) {
-            log.error("ошибка проверки подключения: {}", e.getMessage());
-            return false;
-        }
+        ConnectionPool current = pool;
+        return current != null && !current.isClosed();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isDbConnected();
+    }
+
+    @Override
+    public void close() {
+        closeDb();
+    }
+
+    /**
+     * Пул соединений для просмотра метрик; null до подключения.
+     */
+    public ConnectionPool getPool() {
+        return pool;
     }
 
     public boolean initDb(String url, String user, String password) {
         try {
             log.info("попытка подключения к {} с пользователем {}", url, user);
-            db = DriverManager.getConnection(url, user, password);
-            db.setAutoCommit(true);
+            pool = new ConnectionPool(url, user, password, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                    LEASE_TIMEOUT_MILLIS, LEAK_THRESHOLD_MILLIS);
             return true;
         } catch (SQLException e) {
             log.error("ошибка подключения: {}, SQL state: {}", e.getMessage(), e.getSQLState());
@@ -38,46 +71,75 @@ public class DbManager {
 
     public void closeDb() {
         if (isDbConnected()) {
-            try {
-                db.close();
-                log.info("база закрыта");
-            } catch (SQLException e) {
-                log.error("ошибка закрытия базы: {}", e.getMessage());
-            }
+            pool.close();
+            log.info("база закрыта");
         }
     }
 
-    public synchronized List<Vehicle> loadFromDb(String userId, boolean loadAll) throws SQLException {
+    /**
+     * Читает таблицу машин целиком и передаёт каждую вместе с владельцем. Чтение идёт
+     * потоком: драйвер postgres держит курсор и подтягивает строки порциями
+     * по {@link #LOAD_FETCH_SIZE} (курсор работает только внутри транзакции), каждая строка
+     * сразу отдаётся потребителю, промежуточного списка нет.
+     *
+     * @return число прочитанных строк
+     */
+    public int loadVehicles(BiConsumer<Vehicle, String> consumer) throws SQLException {
         if (!isDbConnected()) throw new SQLException("база не подключена");
-        List<Vehicle> vehicles = new ArrayList<>();
-        String sql = loadAll ? "select * from s466080.vehicles" : "select * from s466080.vehicles where user_id = ?";
-        try (PreparedStatement stmt = db.prepareStatement(sql)) {
-            if (!loadAll) stmt.setString(1, userId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Vehicle vehicle = new Vehicle(
-                            rs.getLong("id"),
-                            new Coordinates(rs.getFloat("coordinates_x"), rs.getInt("coordinates_y")),
-                            rs.getString("name"),
-                            rs.getFloat("engine_power"),
-                            VehicleType.valueOf(rs.getString("vehicle_type")),
-                            FuelType.valueOf(rs.getString("fuel_type"))
-                    );
-                    Timestamp ts = rs.getTimestamp("creation_date");
-                    if (ts != null) {
-                        vehicle.setCreationDate(ts.toLocalDateTime().atZone(ZonedDateTime.now().getZone()));
+        long started = System.nanoTime();
+        int count = 0;
+        ZoneId zone = ZoneId.systemDefault();
+        // у всех машин пользователя одна строка логина вместо копии на каждую
+        Map<String, String> owners = new HashMap<>();
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection db = lease.connection();
+            db.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = lease.prepare(SELECT_VEHICLES);
+                stmt.setFetchSize(LOAD_FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Vehicle vehicle = new Vehicle(
+                                rs.getLong(1),
+                                new Coordinates(rs.getFloat(3), rs.getInt(4)),
+                                rs.getString(2),
+                                rs.getFloat(6),
+                                lookup(VEHICLE_TYPES, rs.getString(7)),
+                                lookup(FUEL_TYPES, rs.getString(8))
+                        );
+                        Timestamp ts = rs.getTimestamp(5);
+                        if (ts != null) {
+                            vehicle.setCreationDate(ts.toLocalDateTime().atZone(zone));
+                        }
+                        String owner = rs.getString(9);
+                        consumer.accept(vehicle, owner == null ? null : owners.computeIfAbsent(owner, key -> key));
+                        count++;
                     }
-                    vehicles.add(vehicle);
                 }
+                db.commit();
+            } finally {
+                db.setAutoCommit(true);
             }
         }
-        log.info("загружено {} записей для userId={}", vehicles.size(), loadAll ? "все" : userId);
-        return vehicles;
+        log.info("загружено {} записей за {} мс", count, (System.nanoTime() - started) / 1_000_000);
+        return count;
     }
 
-    public synchronized boolean authenticateUser(String login, String password) throws SQLException {
-        if (!isDbConnected()) throw new SQLException("база не подключена");
-        try (PreparedStatement stmt = db.prepareStatement("select password from s466080.users where login = ?")) {
+    @Override
+    public void cacheCredentials(Map<String, String> hashes) {
+        offlineUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OFFLINE_LOGIN_TTL_MILLIS);
+        offlineUsers = Map.copyOf(hashes);
+    }
+
+    public boolean authenticateUser(String login, String password) throws SQLException {
+        if (!isDbConnected()) {
+            // пока база подключается, пускаем по хэшам из снимка, но не дольше db.offline.login.ttl.ms
+            String stored = System.nanoTime() - offlineUntilNanos < 0 ? offlineUsers.get(login) : null;
+            if (stored == null) throw new SQLException("база не подключена");
+            return password != null && stored.equals(md5(password));
+        }
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement stmt = lease.prepare("select password from s466080.users where login = ?");
             stmt.setString(1, login);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -90,26 +152,41 @@ public class DbManager {
         return false;
     }
 
-    public synchronized boolean registerUser(String login, String password) throws SQLException {
+    public Map<String, String> loadUsers() throws SQLException {
         if (!isDbConnected()) throw new SQLException("база не подключена");
-        try (PreparedStatement stmt = db.prepareStatement("select password from s466080.users where login = ?")) {
-            stmt.setString(1, login);
+        Map<String, String> users = new HashMap<>();
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement stmt = lease.prepare("select login, password from s466080.users");
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) return false;
+                while (rs.next()) {
+                    users.put(rs.getString(1), rs.getString(2));
+                }
             }
         }
-        try (PreparedStatement stmt = db.prepareStatement("insert into s466080.users (login, password) values (?, ?)")) {
-            stmt.setString(1, login);
-            stmt.setString(2, md5(password));
-            stmt.executeUpdate();
+        return users;
+    }
+
+    public boolean registerUser(String login, String password) throws SQLException {
+        if (!isDbConnected()) throw new SQLException("база не подключена");
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement select = lease.prepare("select password from s466080.users where login = ?");
+            select.setString(1, login);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) return false;
+            }
+            PreparedStatement insert = lease.prepare("insert into s466080.users (login, password) values (?, ?)");
+            insert.setString(1, login);
+            insert.setString(2, md5(password));
+            insert.executeUpdate();
             return true;
         } catch (SQLException e) {
-            if (e.getSQLState().equals("23505")) return false;
+            if ("23505".equals(e.getSQLState())) return false;
             throw e;
         }
     }
 
-    private String md5(String input) {
+    // тем же хэшем пароли хранит встроенное хранилище
+    static String md5(String input) {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
             byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
@@ -125,39 +202,196 @@ public class DbManager {
 
     public boolean addVehicle(Vehicle vehicle, String userId) throws SQLException {
         if (!isDbConnected()) throw new SQLException("база не подключена");
-        String sql = "insert into s466080.vehicles (name, coordinates_x, coordinates_y, creation_date, engine_power, vehicle_type, fuel_type, user_id) values (?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = db.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, vehicle.getName());
-            stmt.setFloat(2, vehicle.getCoordinates().getX());
-            stmt.setInt(3, vehicle.getCoordinates().getY());
-            stmt.setTimestamp(4, Timestamp.from(vehicle.getCreationDate().toInstant()));
-            stmt.setFloat(5, vehicle.getPower());
-            stmt.setString(6, vehicle.getType().name());
-            stmt.setString(7, vehicle.getFuelType().name());
-            stmt.setString(8, userId);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement stmt = lease.prepare(INSERT_VEHICLE, Statement.RETURN_GENERATED_KEYS);
+            bindInsert(stmt, vehicle, userId);
             int rows = stmt.executeUpdate();
             if (rows > 0) {
-                ResultSet rs = stmt.getGeneratedKeys();
-                if (rs.next()) {
-                    vehicle.setId(rs.getLong(1)); // устанавливаем id
-                    return true;
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        vehicle.setId(rs.getLong(1)); // устанавливаем id
+                        return true;
+                    }
                 }
             }
         }
         return false;
     }
 
-    public synchronized boolean updateVehicle(long id, Vehicle vehicle, String userId) throws SQLException {
-        if (db == null) throw new SQLException("база не подключена");
+    /**
+     * Добавляет машины одной транзакцией пакетами по {@link #INSERT_BATCH_SIZE} и
+     * проставляет им id в порядке списка. При ошибке не добавляется ни одна.
+     */
+    public void addVehicles(List<Vehicle> vehicles, String userId) throws SQLException {
+        if (!isDbConnected()) throw new SQLException("база не подключена");
+        if (vehicles.isEmpty()) return;
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection db = lease.connection();
+            db.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = lease.prepare(INSERT_VEHICLE, Statement.RETURN_GENERATED_KEYS);
+                for (int from = 0; from < vehicles.size(); from += INSERT_BATCH_SIZE) {
+                    List<Vehicle> batch = vehicles.subList(from, Math.min(from + INSERT_BATCH_SIZE, vehicles.size()));
+                    for (Vehicle vehicle : batch) {
+                        bindInsert(stmt, vehicle, userId);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    // ключи пакета приходят в порядке добавления строк
+                    try (ResultSet rs = stmt.getGeneratedKeys()) {
+                        for (Vehicle vehicle : batch) {
+                            if (!rs.next()) throw new SQLException("база вернула не все id добавленных машин");
+                            vehicle.setId(rs.getLong(1));
+                        }
+                    }
+                }
+                db.commit();
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+        log.info("пакетно добавлено {} машин для userId={}", vehicles.size(), userId);
+    }
+
+    /**
+     * Резервирует id в последовательности таблицы, чтобы выдавать их машинам до записи в базу.
+     */
+    public List<Long> reserveIds(int count) throws SQLException {
+        if (!isDbConnected()) throw new SQLException("база не подключена");
+        List<Long> ids = new ArrayList<>(count);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement stmt = lease.prepare("select nextval(pg_get_serial_sequence('s466080.vehicles', 'id')) from generate_series(1, ?)");
+            stmt.setInt(1, count);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Применяет изменения из очереди отложенной записи одной транзакцией в их порядке;
+     * подряд идущие изменения одного вида уходят одним пакетом JDBC.
+     */
+    public void applyMutations(List<WriteBehindQueue.Mutation> mutations) throws SQLException {
+        if (!isDbConnected()) throw new SQLException("база не подключена");
+        if (mutations.stream().allMatch(mutation -> mutation.kind() == WriteBehindQueue.Mutation.Kind.BARRIER)) return;
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection db = lease.connection();
+            db.setAutoCommit(false);
+            try {
+                PreparedStatement pending = null;
+                for (WriteBehindQueue.Mutation mutation : mutations) {
+                    PreparedStatement stmt;
+                    switch (mutation.kind()) {
+                        case INSERT:
+                            stmt = lease.prepare(INSERT_VEHICLE_WITH_ID);
+                            stmt.setLong(9, mutation.id());
+                            bindInsert(stmt, mutation.vehicle(), mutation.userId());
+                            break;
+                        case UPDATE:
+                            stmt = lease.prepare(UPDATE_VEHICLE);
+                            bindUpdate(stmt, mutation.id(), mutation.vehicle(), mutation.userId());
+                            break;
+                        case DELETE:
+                            stmt = lease.prepare("delete from s466080.vehicles where id = ? and user_id = ?");
+                            stmt.setLong(1, mutation.id());
+                            stmt.setString(2, mutation.userId());
+                            break;
+                        default:
+                            continue;
+                    }
+                    if (pending != null && pending != stmt) {
+                        pending.executeBatch();
+                    }
+                    stmt.addBatch();
+                    pending = stmt;
+                }
+                if (pending != null) {
+                    pending.executeBatch();
+                }
+                db.commit();
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static <E extends Enum<E>> Map<String, E> byName(E[] values) {
+        Map<String, E> map = new HashMap<>();
+        for (E value : values) {
+            map.put(value.name(), value);
+        }
+        return map;
+    }
+
+    private static <E extends Enum<E>> E lookup(Map<String, E> values, String name) throws SQLException {
+        E value = values.get(name);
+        if (value == null) {
+            throw new SQLException("неизвестное значение в базе: " + name);
+        }
+        return value;
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Vehicle vehicle, String userId) throws SQLException {
+        stmt.setString(1, vehicle.getName());
+        stmt.setFloat(2, vehicle.getCoordinates().getX());
+        stmt.setInt(3, vehicle.getCoordinates().getY());
+        stmt.setTimestamp(4, Timestamp.from(vehicle.getCreationDate().toInstant()));
+        stmt.setFloat(5, vehicle.getPower());
+        stmt.setString(6, vehicle.getType().name());
+        stmt.setString(7, vehicle.getFuelType().name());
+        stmt.setString(8, userId);
+    }
+
+    /**
+     * Обновляет машину, если она принадлежит пользователю; владелец проверяется
+     * в том же запросе.
+     */
+    public boolean updateVehicle(long id, Vehicle vehicle, String userId) throws SQLException {
+        return updateVehicle(id, vehicle, userId, false);
+    }
+
+    /**
+     * Заменяет машину пользователя, только если новая мощность меньше текущей:
+     * сравнение и запись происходят атомарно одним запросом.
+     */
+    public boolean replaceVehicleIfLower(long id, Vehicle vehicle, String userId) throws SQLException {
+        return updateVehicle(id, vehicle, userId, true);
+    }
+
+    private boolean updateVehicle(long id, Vehicle vehicle, String userId, boolean onlyIfLower) throws SQLException {
+        if (!isDbConnected()) throw new SQLException("база не подключена");
         if (vehicle.getName() == null || vehicle.getName().isEmpty() ||
                 vehicle.getCoordinates() == null || vehicle.getPower() <= 0 ||
                 vehicle.getType() == null || vehicle.getFuelType() == null ||
                 userId == null) {
             throw new SQLException("некорректные данные машины или пользователь");
         }
-        PreparedStatement stmt = db.prepareStatement(
-                "update s466080.vehicles set name = ?, coordinates_x = ?, coordinates_y = ?, creation_date = ?, engine_power = ?, vehicle_type = ?, fuel_type = ? where id = ? and user_id = ?"
-        );
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement stmt = lease.prepare(onlyIfLower ? UPDATE_VEHICLE + " and engine_power > ?" : UPDATE_VEHICLE);
+            bindUpdate(stmt, id, vehicle, userId);
+            if (onlyIfLower) {
+                stmt.setFloat(10, vehicle.getPower());
+            }
+            int rows = stmt.executeUpdate();
+            if (rows > 0) {
+                vehicle.setId(id);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void bindUpdate(PreparedStatement stmt, long id, Vehicle vehicle, String userId) throws SQLException {
         stmt.setString(1, vehicle.getName());
         stmt.setFloat(2, vehicle.getCoordinates().getX());
         stmt.setInt(3, vehicle.getCoordinates().getY());
@@ -167,30 +401,58 @@ public class DbManager {
         stmt.setString(7, vehicle.getFuelType().name());
         stmt.setLong(8, id);
         stmt.setString(9, userId);
-        int rows = stmt.executeUpdate();
-        if (rows > 0) {
-            vehicle.setId(id);
-            return true;
+    }
+
+    public boolean removeVehicle(long id, String userId) throws SQLException {
+        if (!isDbConnected()) throw new SQLException("база не подключена");
+        if (userId == null) throw new SQLException("пользователь не указан");
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement stmt = lease.prepare("delete from s466080.vehicles where id = ? and user_id = ?");
+            stmt.setLong(1, id);
+            stmt.setString(2, userId);
+            int rows = stmt.executeUpdate();
+            return rows > 0;
         }
-        return false;
     }
 
-    public synchronized boolean removeVehicle(long id, String userId) throws SQLException {
-        if (db == null) throw new SQLException("база не подключена");
+    /**
+     * Удаляет машины пользователя с id больше заданного одним запросом.
+     *
+     * @return id удалённых машин
+     */
+    public List<Long> removeVehiclesAbove(long id, String userId) throws SQLException {
+        return deleteReturningIds("delete from s466080.vehicles where user_id = ? and id > ? returning id", userId,
+                stmt -> stmt.setLong(2, id));
+    }
+
+    public List<Long> removeVehiclesByPower(float power, String userId) throws SQLException {
+        return deleteReturningIds("delete from s466080.vehicles where user_id = ? and engine_power = ? returning id", userId,
+                stmt -> stmt.setFloat(2, power));
+    }
+
+    public List<Long> removeVehiclesOf(String userId) throws SQLException {
+        return deleteReturningIds("delete from s466080.vehicles where user_id = ? returning id", userId, stmt -> {
+        });
+    }
+
+    private List<Long> deleteReturningIds(String sql, String userId, StatementBinder binder) throws SQLException {
+        if (!isDbConnected()) throw new SQLException("база не подключена");
         if (userId == null) throw new SQLException("пользователь не указан");
-        PreparedStatement stmt = db.prepareStatement("delete from s466080.vehicles where id = ? and user_id = ?");
-        stmt.setLong(1, id);
-        stmt.setString(2, userId);
-        int rows = stmt.executeUpdate();
-        return rows > 0;
-    }
-
-    public synchronized boolean canModify(long id, String userId) throws SQLException {
-        if (db == null) throw new SQLException("база не подключена");
-        if (userId == null) return false;
-        PreparedStatement stmt = db.prepareStatement("select user_id from s466080.vehicles where id = ?");
-        stmt.setLong(1, id);
-        ResultSet rs = stmt.executeQuery();
-        return rs.next() && rs.getString("user_id").equals(userId);
-    }
-}
\ No newline at end of file
+        List<Long> ids = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setString(1, userId);
+            binder.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private interface StatementBinder {
+        void bind(PreparedStatement stmt) throws SQLException;
+    }
+}
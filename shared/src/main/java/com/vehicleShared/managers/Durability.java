@@ -0,0 +1,25 @@
+package com.vehicleShared.managers;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Когда подтверждать изменение клиенту в режиме отложенной записи. Команды, которым нужна
+ * фиксация в базе, перечисляются через запятую в {@code -Ddb.writeBehind.durable=insert,update}.
+ */
+public enum Durability {
+    /** ответ уходит, как только изменение применено в памяти и встало в очередь */
+    ENQUEUED,
+    /** ответ уходит после фиксации транзакции с этим изменением */
+    COMMITTED;
+
+    private static final Set<String> COMMITTED_COMMANDS = Arrays.stream(System.getProperty("db.writeBehind.durable", "").split(","))
+            .map(String::trim)
+            .filter(command -> !command.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+
+    public static Durability of(String command) {
+        return COMMITTED_COMMANDS.contains(command) ? COMMITTED : ENQUEUED;
+    }
+}
@@ -0,0 +1,531 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.Vehicle;
+import com.vehicleShared.network.BinaryCodec;
+import com.vehicleShared.network.WireBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Встроенное хранилище без внешней базы, включается через -Dserver.storage=embedded.
+ * Состояние целиком держится в памяти, а каждое изменение сначала дописывается в журнал
+ * в файле, отображённом в память. Когда журнал вырастает больше порога и при закрытии,
+ * состояние сжимается в снимок, а журнал начинается заново.
+ * <p>
+ * Запись журнала: длина, тип, тело и crc32. При открытии читается снимок, затем журнал
+ * до первой пустой или битой записи, так что недописанный при падении хвост отбрасывается.
+ * Изменения из нескольких строк пишутся одной пакетной записью и применяются целиком
+ * или никак. Повтор журнала поверх снимка ничего не портит, поэтому падение между
+ * записью снимка и очисткой журнала безопасно.
+ * <p>
+ * Без -Dstorage.sync=true запись не ждёт диска: падение процесса ей не страшно,
+ * а падение машины может потерять последние изменения.
+ */
+public class EmbeddedStorage implements StorageBackend {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedStorage.class);
+    private static final int INITIAL_JOURNAL_SIZE = 1 << 20;
+    private static final long COMPACT_THRESHOLD = Long.getLong("storage.compact.bytes", 64L << 20);
+    private static final boolean SYNC = Boolean.getBoolean("storage.sync");
+    private static final int SNAPSHOT_MAGIC = 0x56534e50; // "VSNP"
+    private static final byte USER = 1;
+    private static final byte PUT = 2;
+    private static final byte DELETE = 3;
+    private static final byte BATCH = 4;
+
+    private final Path directory;
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final Map<Long, Entry> vehicles = new HashMap<>();
+    private final Map<String, String> users = new HashMap<>();
+    private final WireBuffer record = new WireBuffer(256);
+    private final CRC32 crc = new CRC32();
+    private long nextId = 1;
+    private FileChannel channel;
+    private MappedByteBuffer journal;
+    private boolean open;
+
+    public EmbeddedStorage(Path directory) {
+        this.directory = directory;
+        this.journalPath = directory.resolve("vehicles.journal");
+        this.snapshotPath = directory.resolve("vehicles.snapshot");
+    }
+
+    /**
+     * Читает снимок и повторяет журнал поверх него.
+     */
+    public synchronized void open() throws SQLException {
+        try {
+            Files.createDirectories(directory);
+            if (Files.exists(snapshotPath)) {
+                readSnapshot();
+            }
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_JOURNAL_SIZE));
+            int replayed = 0;
+            while (readRecord(journal)) {
+                replayed++;
+            }
+            open = true;
+            log.info("хранилище {} открыто: машин {}, пользователей {}, записей журнала {}",
+                    directory, vehicles.size(), users.size(), replayed);
+        } catch (IOException | RuntimeException e) {
+            throw new SQLException("не удалось открыть хранилище " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            compact();
+            channel.close();
+            log.info("хранилище {} закрыто", directory);
+        } catch (IOException e) {
+            log.error("ошибка закрытия хранилища: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized int loadVehicles(BiConsumer<Vehicle, String> consumer) throws SQLException {
+        checkOpen();
+        for (Entry entry : vehicles.values()) {
+            consumer.accept(copyOf(entry.vehicle.getId(), entry.vehicle), entry.owner);
+        }
+        log.info("загружено {} записей", vehicles.size());
+        return vehicles.size();
+    }
+
+    @Override
+    public synchronized boolean authenticateUser(String login, String password) throws SQLException {
+        checkOpen();
+        String stored = users.get(login);
+        return stored != null && password != null && stored.equals(DbManager.md5(password));
+    }
+
+    @Override
+    public synchronized Map<String, String> loadUsers() throws SQLException {
+        checkOpen();
+        return new HashMap<>(users);
+    }
+
+    @Override
+    public synchronized boolean registerUser(String login, String password) throws SQLException {
+        checkOpen();
+        if (users.containsKey(login)) {
+            return false;
+        }
+        String hash = DbManager.md5(password);
+        record.clear();
+        encodeUser(record, login, hash);
+        append();
+        users.put(login, hash);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addVehicle(Vehicle vehicle, String userId) throws SQLException {
+        addVehicles(List.of(vehicle), userId);
+        return true;
+    }
+
+    @Override
+    public synchronized void addVehicles(List<Vehicle> vehicles, String userId) throws SQLException {
+        checkOpen();
+        if (vehicles.isEmpty()) {
+            return;
+        }
+        long firstId = nextId;
+        record.clear();
+        int start = beginBatch();
+        for (int i = 0; i < vehicles.size(); i++) {
+            encodePut(record, copyOf(firstId + i, vehicles.get(i)), userId);
+        }
+        endBatch(start);
+        append();
+        nextId += vehicles.size();
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle vehicle = vehicles.get(i);
+            vehicle.setId(firstId + i);
+            this.vehicles.put(vehicle.getId(), new Entry(copyOf(vehicle.getId(), vehicle), userId));
+        }
+    }
+
+    @Override
+    public synchronized List<Long> reserveIds(int count) throws SQLException {
+        checkOpen();
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextId++);
+        }
+        return ids;
+    }
+
+    /**
+     * Изменения пишутся одной пакетной записью. Как и в базе, обновление и удаление чужой
+     * или отсутствующей машины ничего не делают, а вставка занятого id отклоняет весь пакет.
+     */
+    @Override
+    public synchronized void applyMutations(List<WriteBehindQueue.Mutation> mutations) throws SQLException {
+        checkOpen();
+        // сначала проверяем пакет на копии владельцев, чтобы не записать его наполовину
+        Map<Long, String> owners = new HashMap<>();
+        List<WriteBehindQueue.Mutation> effective = new ArrayList<>(mutations.size());
+        for (WriteBehindQueue.Mutation mutation : mutations) {
+            long id = mutation.id();
+            String owner = owners.containsKey(id) ? owners.get(id) : ownerOf(id);
+            switch (mutation.kind()) {
+                case INSERT:
+                    if (owner != null) {
+                        throw new SQLException("машина с id " + id + " уже есть");
+                    }
+                    owners.put(id, mutation.userId());
+                    effective.add(mutation);
+                    break;
+                case UPDATE:
+                    if (owner != null && owner.equals(mutation.userId())) {
+                        effective.add(mutation);
+                    }
+                    break;
+                case DELETE:
+                    if (owner != null && owner.equals(mutation.userId())) {
+                        owners.put(id, null);
+                        effective.add(mutation);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (effective.isEmpty()) {
+            return;
+        }
+        record.clear();
+        int start = beginBatch();
+        for (WriteBehindQueue.Mutation mutation : effective) {
+            if (mutation.kind() == WriteBehindQueue.Mutation.Kind.DELETE) {
+                encodeDelete(record, mutation.id());
+            } else {
+                encodePut(record, copyOf(mutation.id(), mutation.vehicle()), mutation.userId());
+            }
+        }
+        endBatch(start);
+        append();
+        for (WriteBehindQueue.Mutation mutation : effective) {
+            if (mutation.kind() == WriteBehindQueue.Mutation.Kind.DELETE) {
+                vehicles.remove(mutation.id());
+            } else {
+                vehicles.put(mutation.id(), new Entry(copyOf(mutation.id(), mutation.vehicle()), mutation.userId()));
+                nextId = Math.max(nextId, mutation.id() + 1);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean updateVehicle(long id, Vehicle vehicle, String userId) throws SQLException {
+        return replace(id, vehicle, userId, false);
+    }
+
+    @Override
+    public synchronized boolean replaceVehicleIfLower(long id, Vehicle vehicle, String userId) throws SQLException {
+        return replace(id, vehicle, userId, true);
+    }
+
+    private boolean replace(long id, Vehicle vehicle, String userId, boolean onlyIfLower) throws SQLException {
+        checkOpen();
+        Entry current = vehicles.get(id);
+        if (current == null || !current.owner.equals(userId)
+                || onlyIfLower && !(current.vehicle.getPower() > vehicle.getPower())) {
+            return false;
+        }
+        Vehicle stored = copyOf(id, vehicle);
+        record.clear();
+        encodePut(record, stored, userId);
+        append();
+        vehicles.put(id, new Entry(stored, userId));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeVehicle(long id, String userId) throws SQLException {
+        if (userId == null) throw new SQLException("пользователь не указан");
+        return !removeWhere(userId, entry -> entry.vehicle.getId() == id).isEmpty();
+    }
+
+    @Override
+    public synchronized List<Long> removeVehiclesAbove(long id, String userId) throws SQLException {
+        return removeWhere(userId, entry -> entry.vehicle.getId() > id);
+    }
+
+    @Override
+    public synchronized List<Long> removeVehiclesByPower(float power, String userId) throws SQLException {
+        return removeWhere(userId, entry -> entry.vehicle.getPower() == power);
+    }
+
+    @Override
+    public synchronized List<Long> removeVehiclesOf(String userId) throws SQLException {
+        return removeWhere(userId, entry -> true);
+    }
+
+    private List<Long> removeWhere(String userId, Predicate<Entry> filter) throws SQLException {
+        checkOpen();
+        if (userId == null) throw new SQLException("пользователь не указан");
+        List<Long> ids = new ArrayList<>();
+        for (Entry entry : vehicles.values()) {
+            if (entry.owner.equals(userId) && filter.test(entry)) {
+                ids.add(entry.vehicle.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        record.clear();
+        int start = beginBatch();
+        for (Long id : ids) {
+            encodeDelete(record, id);
+        }
+        endBatch(start);
+        append();
+        for (Long id : ids) {
+            vehicles.remove(id);
+        }
+        return ids;
+    }
+
+    private String ownerOf(long id) {
+        Entry entry = vehicles.get(id);
+        return entry == null ? null : entry.owner;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (!open) throw new SQLException("хранилище не открыто");
+    }
+
+    // хранилище держит свою копию: объекты коллекции могут меняться мимо него
+    private static Vehicle copyOf(long id, Vehicle vehicle) {
+        return new Vehicle(id, vehicle.getCoordinates(), vehicle.getCreationDate(), vehicle.getName(),
+                vehicle.getPower(), vehicle.getType(), vehicle.getFuelType());
+    }
+
+    private void encodeUser(WireBuffer out, String login, String hash) {
+        int start = out.position();
+        out.putInt(0).putByte(USER).putString(login).putString(hash);
+        seal(out, start);
+    }
+
+    private void encodePut(WireBuffer out, Vehicle vehicle, String owner) {
+        int start = out.position();
+        out.putInt(0).putByte(PUT).putString(owner);
+        BinaryCodec.writeVehicle(vehicle, out);
+        seal(out, start);
+    }
+
+    private void encodeDelete(WireBuffer out, long id) {
+        int start = out.position();
+        out.putInt(0).putByte(DELETE).putLong(id);
+        seal(out, start);
+    }
+
+    private int beginBatch() {
+        int start = record.position();
+        record.putInt(0).putByte(BATCH);
+        return start;
+    }
+
+    private void endBatch(int start) {
+        seal(record, start);
+    }
+
+    // проставляет длину записи, начатой на start, и дописывает её crc
+    private void seal(WireBuffer out, int start) {
+        out.patchInt(start, out.position() - start - 4);
+        crc.reset();
+        crc.update(out.view(start + 4, out.position()));
+        out.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Применяет запись с текущей позиции буфера и сдвигает позицию за неё.
+     *
+     * @return false на пустой, недописанной или битой записи, позиция тогда не меняется
+     */
+    private boolean readRecord(ByteBuffer in) {
+        int start = in.position();
+        if (in.remaining() < 4) {
+            return false;
+        }
+        int length = in.getInt(start);
+        if (length <= 0 || length > in.remaining() - 8) {
+            return false;
+        }
+        ByteBuffer body = in.slice(start + 4, length);
+        crc.reset();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != in.getInt(start + 4 + length)) {
+            return false;
+        }
+        apply(body);
+        in.position(start + 8 + length);
+        return true;
+    }
+
+    private void apply(ByteBuffer body) {
+        byte type = body.get();
+        switch (type) {
+            case USER: {
+                String login = BinaryCodec.getString(body);
+                users.put(login, BinaryCodec.getString(body));
+                break;
+            }
+            case PUT: {
+                String owner = BinaryCodec.getString(body);
+                Vehicle vehicle = BinaryCodec.readVehicle(body);
+                vehicles.put(vehicle.getId(), new Entry(vehicle, owner));
+                nextId = Math.max(nextId, vehicle.getId() + 1);
+                break;
+            }
+            case DELETE:
+                vehicles.remove(body.getLong());
+                break;
+            case BATCH:
+                while (body.hasRemaining()) {
+                    if (!readRecord(body)) {
+                        throw new IllegalStateException("повреждённая пакетная запись");
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("неизвестный тип записи " + type);
+        }
+    }
+
+    /**
+     * Запись из буфера record уходит в журнал. Переполненный журнал сжимается в начале
+     * следующей записи, а не после этой: вызывающий ещё не применил её к состоянию, и снимок
+     * без неё вместе с обнулённым журналом потерял бы уже записанное изменение. Ошибка сжатия
+     * только пишется в лог — журнал остаётся целым, сжатие повторится со следующей записью.
+     */
+    private void append() throws SQLException {
+        if (journal.position() > COMPACT_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException e) {
+                log.error("не удалось сжать журнал, повтор со следующей записью: {}", e.getMessage());
+            }
+        }
+        ByteBuffer bytes = record.view(0, record.position());
+        try {
+            if (journal.remaining() < bytes.remaining()) {
+                long size = Math.max((long) journal.capacity() * 2, (long) journal.position() + bytes.remaining());
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("журнал больше 2 гб");
+                }
+                int position = journal.position();
+                journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                journal.position(position);
+            }
+            journal.put(bytes);
+            if (SYNC) {
+                journal.force();
+            }
+        } catch (IOException e) {
+            throw new SQLException("ошибка записи журнала: " + e.getMessage(), e);
+        }
+    }
+
+    private void readSnapshot() throws IOException {
+        try (FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            ByteBuffer snapshot = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (snapshot.remaining() < 12 || snapshot.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("файл " + snapshotPath + " не похож на снимок");
+            }
+            nextId = snapshot.getLong();
+            while (readRecord(snapshot)) {
+                // записи применяются по ходу чтения
+            }
+            if (snapshot.hasRemaining()) {
+                throw new IOException("снимок повреждён на позиции " + snapshot.position());
+            }
+        }
+    }
+
+    /**
+     * Пишет снимок во временный файл, атомарно подменяет им старый и обнуляет журнал.
+     */
+    private void compact() throws IOException {
+        long started = System.nanoTime();
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            WireBuffer buffer = new WireBuffer(64 * 1024);
+            buffer.putInt(SNAPSHOT_MAGIC).putLong(nextId);
+            for (Map.Entry<String, String> user : users.entrySet()) {
+                encodeUser(buffer, user.getKey(), user.getValue());
+                drain(buffer, out, false);
+            }
+            for (Entry entry : vehicles.values()) {
+                encodePut(buffer, entry.vehicle, entry.owner);
+                drain(buffer, out, false);
+            }
+            drain(buffer, out, true);
+            out.force(true);
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // после подмены снимка журнал уже не нужен: обнуляем использованную часть
+        int used = journal.position();
+        journal.position(0);
+        byte[] zeros = new byte[Math.min(used, 64 * 1024)];
+        for (int left = used; left > 0; left -= zeros.length) {
+            journal.put(zeros, 0, Math.min(left, zeros.length));
+        }
+        journal.force();
+        journal.position(0);
+        log.info("снимок хранилища записан: машин {}, журнал {} байт, {} мс",
+                vehicles.size(), used, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static void drain(WireBuffer buffer, FileChannel out, boolean force) throws IOException {
+        if (!force && buffer.position() < 60 * 1024) {
+            return;
+        }
+        ByteBuffer bytes = buffer.view(0, buffer.position());
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        buffer.clear();
+    }
+
+    private static final class Entry {
+        private final Vehicle vehicle;
+        private final String owner;
+
+        private Entry(Vehicle vehicle, String owner) {
+            this.vehicle = vehicle;
+            this.owner = owner;
+        }
+    }
+}
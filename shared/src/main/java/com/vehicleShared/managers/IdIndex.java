@@ -0,0 +1,136 @@
+package com.vehicleShared.managers;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Id коллекции по возрастанию для постраничной выдачи: отсортированные блоки long без
+ * упаковки, блок и позиция в нём ищутся двоичным поиском. Страница стоит O(log n + limit),
+ * а не проход по всей коллекции.
+ */
+final class IdIndex {
+    private static final int BLOCK = 512;
+    private final StampedLock lock = new StampedLock();
+    private long[][] blocks;
+    private int[] sizes;
+    private int count;
+
+    IdIndex() {
+        reset();
+    }
+
+    void add(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int block = blockFor(id);
+            int position = Arrays.binarySearch(blocks[block], 0, sizes[block], id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (sizes[block] == BLOCK) {
+                split(block);
+                if (position > BLOCK / 2) {
+                    position -= BLOCK / 2;
+                    block++;
+                }
+            }
+            long[] ids = blocks[block];
+            System.arraycopy(ids, position, ids, position + 1, sizes[block] - position);
+            ids[position] = id;
+            sizes[block]++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int block = blockFor(id);
+            int position = Arrays.binarySearch(blocks[block], 0, sizes[block], id);
+            if (position < 0) {
+                return;
+            }
+            long[] ids = blocks[block];
+            System.arraycopy(ids, position + 1, ids, position, sizes[block] - position - 1);
+            if (--sizes[block] == 0 && count > 1) {
+                System.arraycopy(blocks, block + 1, blocks, block, count - block - 1);
+                System.arraycopy(sizes, block + 1, sizes, block, count - block - 1);
+                blocks[--count] = null;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return до {@code limit} id больше {@code afterId} по возрастанию
+     */
+    long[] after(long afterId, int limit) {
+        long stamp = lock.readLock();
+        try {
+            long[] page = new long[Math.min(limit, BLOCK)];
+            int found = 0;
+            int block = blockFor(afterId);
+            int position = Arrays.binarySearch(blocks[block], 0, sizes[block], afterId);
+            position = position >= 0 ? position + 1 : -position - 1;
+            for (; block < count && found < limit; block++, position = 0) {
+                for (; position < sizes[block] && found < limit; position++) {
+                    if (found == page.length) {
+                        page = Arrays.copyOf(page, Math.min(limit, page.length * 2));
+                    }
+                    page[found++] = blocks[block][position];
+                }
+            }
+            return found == page.length ? page : Arrays.copyOf(page, found);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            reset();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void reset() {
+        blocks = new long[][]{new long[BLOCK]};
+        sizes = new int[1];
+        count = 1;
+    }
+
+    // последний блок, который начинается не позже id; пустым бывает только единственный блок
+    private int blockFor(long id) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blocks[middle][0] <= id) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void split(int block) {
+        if (count == blocks.length) {
+            blocks = Arrays.copyOf(blocks, count * 2);
+            sizes = Arrays.copyOf(sizes, count * 2);
+        }
+        System.arraycopy(blocks, block + 1, blocks, block + 2, count - block - 1);
+        System.arraycopy(sizes, block + 1, sizes, block + 2, count - block - 1);
+        long[] upper = new long[BLOCK];
+        System.arraycopy(blocks[block], BLOCK / 2, upper, 0, BLOCK / 2);
+        blocks[block + 1] = upper;
+        sizes[block + 1] = BLOCK / 2;
+        sizes[block] = BLOCK / 2;
+        count++;
+    }
+}
@@ -0,0 +1,203 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.Vehicle;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Хранилище на открытой адресации: параллельные массивы long-ключей и машин, линейное
+ * пробирование, удаление сдвигом назад без надгробий. Узлов на запись нет, пустой слот —
+ * null в массиве машин.
+ * <p>
+ * Таблица разбита на сегменты со своим StampedLock: запись держит блокировку сегмента,
+ * чтение идёт оптимистично без блокировки и перечитывает под ней, только если сегмент
+ * за это время меняли.
+ */
+public final class LongVehicleMap implements VehicleStore {
+    private static final int SEGMENT_BITS = 6;
+    private static final int MIN_CAPACITY = 16;
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    public LongVehicleMap() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public Vehicle get(long id) {
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.tryOptimisticRead();
+        Vehicle found = segment.find(id, hash);
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                found = segment.find(id, hash);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean containsKey(long id) {
+        return get(id) != null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public Vehicle compute(long id, UnaryOperator<Vehicle> remapping) {
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.compute(id, hash, remapping);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            // сегмент обходится под чтением без копии: запись в него ждёт конца обхода
+            long stamp = segment.lock.readLock();
+            try {
+                Table table = segment.table;
+                for (int i = 0; i < table.values.length; i++) {
+                    if (table.values[i] != null) {
+                        consumer.accept(table.keys[i], table.values[i]);
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.table = new Table(MIN_CAPACITY);
+                segment.size = 0;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    // старшие биты выбирают сегмент, младшие — слот внутри него
+    private static int hash(long id) {
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    // ключи и машины одной длины меняются вместе, так оптимистичное чтение не выйдет за массив
+    private static final class Table {
+        private final long[] keys;
+        private final Vehicle[] values;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Vehicle[capacity];
+        }
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private Table table = new Table(MIN_CAPACITY);
+        private volatile int size;
+
+        // без блокировки может увидеть полуизменённую таблицу, результат проверяет validate
+        private Vehicle find(long id, int hash) {
+            Table table = this.table;
+            int mask = table.keys.length - 1;
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                Vehicle vehicle = table.values[i];
+                if (vehicle == null) {
+                    return null;
+                }
+                if (table.keys[i] == id) {
+                    return vehicle;
+                }
+            }
+            return null;
+        }
+
+        private Vehicle compute(long id, int hash, UnaryOperator<Vehicle> remapping) {
+            Table table = this.table;
+            int mask = table.keys.length - 1;
+            int i = hash & mask;
+            while (table.values[i] != null && table.keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            Vehicle current = table.values[i];
+            Vehicle next = remapping.apply(current);
+            if (next == null) {
+                if (current != null) {
+                    delete(table, i);
+                }
+            } else if (current != null) {
+                table.values[i] = next;
+            } else {
+                table.keys[i] = id;
+                table.values[i] = next;
+                size++;
+                if (size > table.keys.length - (table.keys.length >>> 2)) {
+                    this.table = resize(table);
+                }
+            }
+            return next;
+        }
+
+        // сдвигаем назад записи цепочки, которым дырка по пути к их домашнему слоту
+        private void delete(Table table, int slot) {
+            int mask = table.keys.length - 1;
+            int gap = slot;
+            for (int i = (slot + 1) & mask; table.values[i] != null; i = (i + 1) & mask) {
+                int home = hash(table.keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    table.keys[gap] = table.keys[i];
+                    table.values[gap] = table.values[i];
+                    gap = i;
+                }
+            }
+            table.keys[gap] = 0;
+            table.values[gap] = null;
+            size--;
+        }
+
+        private static Table resize(Table table) {
+            Table resized = new Table(table.keys.length << 1);
+            int mask = resized.keys.length - 1;
+            for (int i = 0; i < table.keys.length; i++) {
+                if (table.values[i] != null) {
+                    int j = hash(table.keys[i]) & mask;
+                    while (resized.values[j] != null) {
+                        j = (j + 1) & mask;
+                    }
+                    resized.keys[j] = table.keys[i];
+                    resized.values[j] = table.values[i];
+                }
+            }
+            return resized;
+        }
+    }
+}
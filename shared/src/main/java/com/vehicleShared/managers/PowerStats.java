@@ -0,0 +1,97 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.FuelType;
+import com.vehicleShared.model.Vehicle;
+import com.vehicleShared.model.VehicleType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Агрегаты мощности, которые обновляются при каждом изменении коллекции: число машин,
+ * сумма мощности и счётчики по типам и топливу. Счётчики полосатые, так что запись из
+ * многих потоков не упирается в одну ячейку, а чтение стоит O(1) от размера коллекции.
+ * <p>
+ * Сумма копится в DoubleAdder и приближённая: ячейки складываются в произвольном порядке,
+ * поэтому вычитание того же значения, что было прибавлено, может оставить остаток округления.
+ * Для пустой коллекции сумма всегда ровно 0.
+ */
+public final class PowerStats {
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+    private static final FuelType[] FUEL_TYPES = FuelType.values();
+
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final LongAdder[] byType = adders(VEHICLE_TYPES.length);
+    private final LongAdder[] byFuel = adders(FUEL_TYPES.length);
+
+    void add(Vehicle vehicle) {
+        change(vehicle, 1);
+    }
+
+    void remove(Vehicle vehicle) {
+        change(vehicle, -1);
+    }
+
+    private void change(Vehicle vehicle, int sign) {
+        count.add(sign);
+        sum.add(sign * (double) vehicle.getPower());
+        if (vehicle.getType() != null) {
+            byType[vehicle.getType().ordinal()].add(sign);
+        }
+        if (vehicle.getFuelType() != null) {
+            byFuel[vehicle.getFuelType().ordinal()].add(sign);
+        }
+    }
+
+    void reset() {
+        count.reset();
+        sum.reset();
+        for (LongAdder adder : byType) {
+            adder.reset();
+        }
+        for (LongAdder adder : byFuel) {
+            adder.reset();
+        }
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double sum() {
+        // + 0.0 превращает -0.0 в 0.0
+        return count() == 0 ? 0 : sum.sum() + 0.0;
+    }
+
+    public double average() {
+        long n = count();
+        return n == 0 ? 0 : sum() / n;
+    }
+
+    public Map<VehicleType, Long> byType() {
+        Map<VehicleType, Long> counts = new EnumMap<>(VehicleType.class);
+        for (VehicleType type : VEHICLE_TYPES) {
+            counts.put(type, byType[type.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    public Map<FuelType, Long> byFuel() {
+        Map<FuelType, Long> counts = new EnumMap<>(FuelType.class);
+        for (FuelType fuel : FUEL_TYPES) {
+            counts.put(fuel, byFuel[fuel.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
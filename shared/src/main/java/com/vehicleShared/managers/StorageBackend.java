@@ -0,0 +1,87 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.Vehicle;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Постоянное хранилище машин и пользователей. Коллекция в памяти загружается из него
+ * при старте и пишет в него каждое изменение. Реализации: {@link DbManager} поверх
+ * postgres и встроенное {@link EmbeddedStorage}.
+ * <p>
+ * Ошибки хранилища любого вида приходят как {@link SQLException}, так их уже
+ * обрабатывают команды.
+ */
+public interface StorageBackend {
+
+    boolean isOpen();
+
+    void close();
+
+    /**
+     * Отдаёт потребителю каждую машину вместе с логином владельца.
+     *
+     * @return число загруженных машин
+     */
+    int loadVehicles(BiConsumer<Vehicle, String> consumer) throws SQLException;
+
+    boolean authenticateUser(String login, String password) throws SQLException;
+
+    /**
+     * @return хэши паролей по логину, для снимка коллекции
+     */
+    Map<String, String> loadUsers() throws SQLException;
+
+    /**
+     * Хэши из снимка, по которым можно пускать пользователей, пока хранилище не открыто.
+     * Вход по ним ограничен сроком; пустая карта снимает его сразу.
+     */
+    default void cacheCredentials(Map<String, String> hashes) {
+    }
+
+    /**
+     * @return false, если логин уже занят
+     */
+    boolean registerUser(String login, String password) throws SQLException;
+
+    /**
+     * Добавляет машину и проставляет ей id, выданный хранилищем.
+     */
+    boolean addVehicle(Vehicle vehicle, String userId) throws SQLException;
+
+    /**
+     * Добавляет машины разом и проставляет им id в порядке списка. При ошибке не добавляется ни одна.
+     */
+    void addVehicles(List<Vehicle> vehicles, String userId) throws SQLException;
+
+    /**
+     * Резервирует id, чтобы выдавать их машинам до записи в хранилище.
+     */
+    List<Long> reserveIds(int count) throws SQLException;
+
+    /**
+     * Применяет изменения из очереди отложенной записи разом и в их порядке.
+     */
+    void applyMutations(List<WriteBehindQueue.Mutation> mutations) throws SQLException;
+
+    boolean updateVehicle(long id, Vehicle vehicle, String userId) throws SQLException;
+
+    /**
+     * Заменяет машину пользователя, только если мощность новой меньше текущей.
+     */
+    boolean replaceVehicleIfLower(long id, Vehicle vehicle, String userId) throws SQLException;
+
+    boolean removeVehicle(long id, String userId) throws SQLException;
+
+    /**
+     * @return id удалённых машин пользователя с id больше заданного
+     */
+    List<Long> removeVehiclesAbove(long id, String userId) throws SQLException;
+
+    List<Long> removeVehiclesByPower(float power, String userId) throws SQLException;
+
+    List<Long> removeVehiclesOf(String userId) throws SQLException;
+}
@@ -0,0 +1,53 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.Vehicle;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Машины коллекции по id. Ключ — примитивный long: ни get, ни обход не упаковывают его в Long.
+ * Изменения идут только через {@link #compute}, чтобы {@link CollectionManager} правил индексы
+ * и агрегаты, пока ключ захвачен.
+ */
+public interface VehicleStore {
+
+    Vehicle get(long id);
+
+    boolean containsKey(long id);
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Атомарно для ключа заменяет значение на результат функции; null удаляет запись.
+     * Функция не должна обращаться к самому хранилищу.
+     *
+     * @return новое значение или null
+     */
+    Vehicle compute(long id, UnaryOperator<Vehicle> remapping);
+
+    /**
+     * Обходит слабо согласованный срез: изменения во время обхода могут быть видны, а могут
+     * и нет, но машина, лежавшая в хранилище весь обход, будет показана ровно один раз.
+     * Обход может держать блокировки хранилища, поэтому потребитель не должен к нему обращаться.
+     */
+    void forEach(EntryConsumer consumer);
+
+    void clear();
+
+    /**
+     * Лежит ли в хранилище та же машина, что была в него записана: откаты отложенной записи
+     * не трогают машину, если её уже сменили.
+     */
+    default boolean isSame(Vehicle stored, Vehicle vehicle) {
+        return stored == vehicle;
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long id, Vehicle vehicle);
+    }
+}
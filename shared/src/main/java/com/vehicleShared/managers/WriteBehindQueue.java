@@ -0,0 +1,237 @@
+package com.vehicleShared.managers;
+
+import com.vehicleShared.model.Vehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Очередь отложенной записи: изменения уже применены в памяти, а в базу уходят пакетами,
+ * по одной транзакции на пакет. Очередь ограничена, при переполнении пишущий поток ждёт.
+ * <p>
+ * Порядок изменений в базе совпадает с порядком постановки в очередь. Если транзакция
+ * пакета не прошла, изменения повторяются по одному, чтобы одно плохое не потеряло остальные.
+ * Любая ошибка хранилища, в том числе непроверяемая, завершает будущие пакета с ошибкой,
+ * а поток записи продолжает работу.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    private final StorageBackend storage;
+    private final BlockingQueue<Mutation> queue;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    // постановка держит чтение, остановка — запись: после close ничего не встанет в очередь мимо потока записи
+    private final ReadWriteLock gate = new ReentrantReadWriteLock();
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public WriteBehindQueue(StorageBackend storage, int capacity, int maxBatch, long lingerMillis) {
+        this.storage = storage;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.flusher = new Thread(this::run, "write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public CompletableFuture<Void> insert(Vehicle vehicle, String userId) {
+        return enqueue(new Mutation(Mutation.Kind.INSERT, vehicle.getId(), vehicle, userId));
+    }
+
+    public CompletableFuture<Void> update(long id, Vehicle vehicle, String userId) {
+        return enqueue(new Mutation(Mutation.Kind.UPDATE, id, vehicle, userId));
+    }
+
+    public CompletableFuture<Void> delete(long id, String userId) {
+        return enqueue(new Mutation(Mutation.Kind.DELETE, id, null, userId));
+    }
+
+    /**
+     * Ждёт, пока в базе окажется всё, что было в очереди к моменту вызова. Нужно перед
+     * запросами, которые пишут в базу мимо очереди.
+     */
+    public void flush() {
+        enqueue(new Mutation(Mutation.Kind.BARRIER, 0, null, null)).join();
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public long flushedMutations() {
+        return flushed.sum();
+    }
+
+    public long failedMutations() {
+        return failed.sum();
+    }
+
+    public double averageFlushMillis() {
+        long count = batches.sum();
+        return count == 0 ? 0 : flushNanos.sum() / 1e6 / count;
+    }
+
+    public double maxFlushMillis() {
+        return maxFlushNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("в очереди %d, записано %d пакетами по %d, ошибок %d, фиксация: средняя %.2f мс, максимум %.2f мс",
+                depth(), flushedMutations(), batches.sum() == 0 ? 0 : flushedMutations() / batches.sum(),
+                failedMutations(), averageFlushMillis(), maxFlushMillis());
+    }
+
+    /**
+     * Останавливает поток записи, дописав всё, что осталось в очереди.
+     */
+    @Override
+    public void close() {
+        gate.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            gate.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("очередь записи остановлена: {}", this);
+    }
+
+    private CompletableFuture<Void> enqueue(Mutation mutation) {
+        gate.readLock().lock();
+        try {
+            if (!running) {
+                return CompletableFuture.failedFuture(new IllegalStateException("очередь записи остановлена"));
+            }
+            queue.put(mutation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            gate.readLock().unlock();
+        }
+        return mutation.committed;
+    }
+
+    private void run() {
+        List<Mutation> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Mutation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // групповая фиксация: забираем всё накопившееся и чуть ждём отставших
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    Mutation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        // поток прерван: оставшиеся изменения не запишутся, их ждущие должны об этом узнать
+        List<Mutation> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        IllegalStateException stopped = new IllegalStateException("поток записи остановлен");
+        abandoned.forEach(mutation -> mutation.committed.completeExceptionally(stopped));
+    }
+
+    private void write(List<Mutation> batch) {
+        long started = System.nanoTime();
+        try {
+            storage.applyMutations(batch);
+            batch.forEach(mutation -> mutation.committed.complete(null));
+        } catch (SQLException | RuntimeException e) {
+            log.error("пакет из {} изменений не записан: {}, повтор по одному", batch.size(), e.getMessage());
+            for (Mutation mutation : batch) {
+                try {
+                    storage.applyMutations(List.of(mutation));
+                    mutation.committed.complete(null);
+                } catch (SQLException | RuntimeException single) {
+                    failed.increment();
+                    log.error("изменение {} машины {} не записано в базу: {}", mutation.kind, mutation.id, single.getMessage());
+                    mutation.committed.completeExceptionally(single);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        batches.increment();
+        flushed.add(batch.size());
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * Одно изменение в очереди; {@code vehicle} есть только у вставки и обновления.
+     */
+    public static final class Mutation {
+        public enum Kind { INSERT, UPDATE, DELETE, BARRIER }
+
+        private final Kind kind;
+        private final long id;
+        private final Vehicle vehicle;
+        private final String userId;
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        private Mutation(Kind kind, long id, Vehicle vehicle, String userId) {
+            this.kind = kind;
+            this.id = id;
+            this.vehicle = vehicle;
+            this.userId = userId;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        public long id() {
+            return id;
+        }
+
+        public Vehicle vehicle() {
+            return vehicle;
+        }
+
+        public String userId() {
+            return userId;
+        }
+    }
+}
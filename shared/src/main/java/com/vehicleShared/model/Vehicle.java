@@ -13,6 +13,8 @@ public class Vehicle implements Serializable, Comparable<Vehicle> {
     private Float enginePower;
     private VehicleType type;
     private FuelType fuelType;
+    // владелец известен только серверу, по сети не передаётся
+    private transient String owner;
 
     public Vehicle(long id, Coordinates coordinates, ZonedDateTime creationDate, String name, Float enginePower, VehicleType type, FuelType fuelType) {
         this.id = id;
@@ -106,4 +108,12 @@ public class Vehicle implements Serializable, Comparable<Vehicle> {
     public void setCreationDate(ZonedDateTime creationDate) {
         this.creationDate = creationDate;
     }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
 }
\ No newline at end of file
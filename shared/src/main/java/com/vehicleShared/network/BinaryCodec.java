@@ -0,0 +1,212 @@
+package com.vehicleShared.network;
+
+import com.vehicleShared.model.*;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Компактный двоичный формат: примитивы фиксированной ширины, перечисления по ordinal,
+ * строки с префиксом длины в UTF-8, даты в миллисекундах эпохи.
+ */
+public class BinaryCodec implements WireCodec {
+    public static final BinaryCodec INSTANCE = new BinaryCodec();
+
+    private static final byte DATA_SERIALIZED = 0;
+    private static final byte DATA_VEHICLE = 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+    private static final FuelType[] FUEL_TYPES = FuelType.values();
+
+    @Override
+    public byte version() {
+        return Protocol.VERSION_BINARY;
+    }
+
+    @Override
+    public void writeRequest(Request request, WireBuffer out) {
+        out.putLong(request.getCorrelationId());
+        out.putString(request.getCommand());
+        out.putString(request.getArgument());
+        out.putString(request.getLogin());
+        out.putString(request.getPassword());
+        Vehicle vehicle = request.getVehicle();
+        out.putBoolean(vehicle != null);
+        if (vehicle != null) {
+            writeVehicle(vehicle, out);
+        }
+        out.putString(request.getCursor());
+        out.putString(request.getSessionToken());
+    }
+
+    @Override
+    public Request readRequest(ByteBuffer in) throws IOException {
+        try {
+            long correlationId = in.getLong();
+            Request request = new Request(getString(in), getString(in), getString(in), getString(in));
+            request.setCorrelationId(correlationId);
+            if (in.get() != 0) {
+                request.setVehicle(readVehicle(in));
+            }
+            request.setCursor(optionalString(in));
+            request.setSessionToken(optionalString(in));
+            return request;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new StreamCorruptedException("повреждённый кадр запроса");
+        }
+    }
+
+    @Override
+    public void writeResponse(Response response, WireBuffer out) throws IOException {
+        out.putLong(response.getCorrelationId());
+        out.putBoolean(response.isSuccess());
+        out.putString(response.getMessage());
+        out.putBoolean(response.requiresVehicle());
+        List<Serializable> data = response.getData();
+        out.putInt(data == null ? -1 : data.size());
+        if (data != null) {
+            for (Serializable item : data) {
+                if (item instanceof Vehicle) {
+                    out.putByte(DATA_VEHICLE);
+                    writeVehicle((Vehicle) item, out);
+                } else {
+                    out.putByte(DATA_SERIALIZED);
+                    writeSerialized(item, out);
+                }
+            }
+        }
+        Exception exception = response.getException();
+        out.putBoolean(exception != null);
+        if (exception != null) {
+            writeSerialized(exception, out);
+        }
+        out.putString(response.getNextCursor());
+        out.putString(response.getSessionToken());
+    }
+
+    @Override
+    public Response readResponse(ByteBuffer in) throws IOException {
+        try {
+            long correlationId = in.getLong();
+            boolean success = in.get() != 0;
+            String message = getString(in);
+            boolean requiresVehicle = in.get() != 0;
+            int size = in.getInt();
+            List<Serializable> data = null;
+            if (size >= 0) {
+                // каждый элемент занимает хотя бы байт признака: больший размер — повреждённый кадр, а не повод выделять память
+                if (size > in.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                data = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    data.add(in.get() == DATA_VEHICLE ? readVehicle(in) : readSerialized(in, Serializable.class));
+                }
+            }
+            Exception exception = in.get() != 0 ? readSerialized(in, Exception.class) : null;
+            Response response = new Response(success, message, requiresVehicle, data, exception);
+            response.setCorrelationId(correlationId);
+            response.setNextCursor(optionalString(in));
+            response.setSessionToken(optionalString(in));
+            return response;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new StreamCorruptedException("повреждённый кадр ответа");
+        }
+    }
+
+    public static void writeVehicle(Vehicle vehicle, WireBuffer out) {
+        out.putLong(vehicle.getId());
+        out.putString(vehicle.getName());
+        writeCoordinates(vehicle.getCoordinates(), out);
+        ZonedDateTime creationDate = vehicle.getCreationDate();
+        out.putLong(creationDate == null ? NO_DATE : creationDate.toInstant().toEpochMilli());
+        out.putFloat(vehicle.getPower());
+        out.putByte(vehicle.getType() == null ? -1 : vehicle.getType().ordinal());
+        out.putByte(vehicle.getFuelType() == null ? -1 : vehicle.getFuelType().ordinal());
+    }
+
+    public static Vehicle readVehicle(ByteBuffer in) {
+        long id = in.getLong();
+        String name = getString(in);
+        Coordinates coordinates = readCoordinates(in);
+        long millis = in.getLong();
+        ZonedDateTime creationDate = millis == NO_DATE
+                ? null
+                : ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        float power = in.getFloat();
+        byte type = in.get();
+        byte fuelType = in.get();
+        return new Vehicle(id, coordinates, creationDate, name, power,
+                type < 0 ? null : VEHICLE_TYPES[type],
+                fuelType < 0 ? null : FUEL_TYPES[fuelType]);
+    }
+
+    public static void writeCoordinates(Coordinates coordinates, WireBuffer out) {
+        out.putBoolean(coordinates != null);
+        if (coordinates != null) {
+            out.putFloat(coordinates.getX());
+            out.putInt(coordinates.getY());
+        }
+    }
+
+    public static Coordinates readCoordinates(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        return new Coordinates(in.getFloat(), in.getInt());
+    }
+
+    public static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    // поле в конце кадра, которого нет у собеседников старой сборки
+    private static String optionalString(ByteBuffer in) {
+        return in.hasRemaining() ? getString(in) : null;
+    }
+
+    // редкие полезные нагрузки без собственного формата уходят блоком стандартной сериализации
+    private static void writeSerialized(Serializable value, WireBuffer out) throws IOException {
+        int lengthAt = out.position();
+        out.putInt(0);
+        SerializationCodec.writeObject(value, out);
+        int end = out.position();
+        out.patchInt(lengthAt, end - lengthAt - 4);
+    }
+
+    private static <T> T readSerialized(ByteBuffer in, Class<T> type) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new StreamCorruptedException("повреждённый блок сериализации");
+        }
+        ByteBuffer block = in.slice();
+        block.limit(length);
+        in.position(in.position() + length);
+        return SerializationCodec.readObject(block, type);
+    }
+}
@@ -0,0 +1,212 @@
+package com.vehicleShared.network;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие тела кадра поверх другого формата, включается при согласовании.
+ * Тело начинается с байта-признака: несжатое идёт как есть, сжатое — длина
+ * исходного тела и deflate на самой быстрой степени. Сжимаются только тела
+ * крупнее порога и только если это действительно уменьшает кадр.
+ */
+public class CompressingCodec implements WireCodec {
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATED = 1;
+    // запрос после распаковки не больше обычного кадра, иначе крошечный кадр заставит сервер
+    // выделять и распаковывать десятки мегабайт; крупнее бывают только ответы, их читает клиент
+    private static final int MAX_INFLATED_REQUEST = Protocol.MAX_FRAME_LENGTH;
+    private static final int MAX_INFLATED_RESPONSE = 64 * Protocol.MAX_FRAME_LENGTH;
+    private static final int SCRATCH_CAPACITY = 64 * 1024;
+    private static final int MAX_RETAINED_SCRATCH = 1024 * 1024;
+    // упаковщики держат память zlib вне кучи, поэтому в пуле их немного, а лишние закрываются сразу
+    private static final int MAX_POOLED = Integer.getInteger("codec.compression.pool",
+            2 * Runtime.getRuntime().availableProcessors());
+    private static final Queue<Zlib> FREE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final WireCodec inner;
+    private final int threshold;
+
+    public CompressingCodec(WireCodec inner, int threshold) {
+        this.inner = inner;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte version() {
+        return inner.version();
+    }
+
+    @Override
+    public void writeRequest(Request request, WireBuffer out) throws IOException {
+        int start = out.position();
+        out.putByte(PLAIN);
+        inner.writeRequest(request, out);
+        compress(out, start);
+    }
+
+    @Override
+    public Request readRequest(ByteBuffer in) throws IOException {
+        Zlib zlib = acquire();
+        try {
+            return inner.readRequest(inflate(in, zlib, MAX_INFLATED_REQUEST));
+        } finally {
+            release(zlib);
+        }
+    }
+
+    @Override
+    public void writeResponse(Response response, WireBuffer out) throws IOException {
+        int start = out.position();
+        out.putByte(PLAIN);
+        inner.writeResponse(response, out);
+        compress(out, start);
+    }
+
+    @Override
+    public Response readResponse(ByteBuffer in) throws IOException {
+        Zlib zlib = acquire();
+        try {
+            return inner.readResponse(inflate(in, zlib, MAX_INFLATED_RESPONSE));
+        } finally {
+            release(zlib);
+        }
+    }
+
+    private void compress(WireBuffer out, int start) {
+        int bodyStart = start + 1;
+        int length = out.position() - bodyStart;
+        if (length < threshold) {
+            return;
+        }
+        Zlib zlib = acquire();
+        try {
+            Deflater deflater = zlib.deflater();
+            deflater.setInput(out.view(bodyStart, out.position()));
+            deflater.finish();
+            // сжатое тело больше исходного не нужно, поэтому рабочий буфер ограничен его длиной
+            ByteBuffer compressed = zlib.scratch(length);
+            while (!deflater.finished() && compressed.hasRemaining()) {
+                deflater.deflate(compressed);
+            }
+            if (!deflater.finished() || compressed.position() + 4 >= length) {
+                return;
+            }
+            compressed.flip();
+            out.truncate(start);
+            out.putByte(DEFLATED);
+            out.putInt(length);
+            out.putBytes(compressed);
+        } finally {
+            release(zlib);
+        }
+    }
+
+    // несжатое тело отдаётся как есть; сжатое распаковывается в буфер zlib, пока тот не возвращён в пул
+    private static ByteBuffer inflate(ByteBuffer in, Zlib zlib, int maxLength) throws IOException {
+        if (!in.hasRemaining()) {
+            throw new StreamCorruptedException("пустой кадр");
+        }
+        byte flag = in.get();
+        if (flag == PLAIN) {
+            return in;
+        }
+        if (flag != DEFLATED || in.remaining() < 4) {
+            throw new StreamCorruptedException("неизвестный признак сжатия " + flag);
+        }
+        int length = in.getInt();
+        if (length <= 0 || length > maxLength) {
+            throw new StreamCorruptedException("некорректная длина сжатого тела " + length);
+        }
+        Inflater inflater = zlib.inflater();
+        inflater.setInput(in);
+        ByteBuffer raw = zlib.scratch(length);
+        try {
+            while (!inflater.finished() && raw.hasRemaining()) {
+                if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("повреждённое сжатое тело: " + e.getMessage());
+        }
+        if (!inflater.finished() || raw.hasRemaining()) {
+            throw new StreamCorruptedException("сжатое тело не совпадает с заявленной длиной");
+        }
+        raw.flip();
+        return raw;
+    }
+
+    private static Zlib acquire() {
+        Zlib zlib = FREE.poll();
+        if (zlib == null) {
+            return new Zlib();
+        }
+        POOLED.decrementAndGet();
+        return zlib;
+    }
+
+    private static void release(Zlib zlib) {
+        zlib.trim();
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            FREE.offer(zlib);
+        } else {
+            POOLED.decrementAndGet();
+            zlib.end();
+        }
+    }
+
+    // упаковщик и распаковщик создаются по первому требованию: кадр обычно нужен только один из них
+    private static final class Zlib {
+        private Deflater deflater;
+        private Inflater inflater;
+        private ByteBuffer scratch;
+
+        private Deflater deflater() {
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            deflater.reset();
+            return deflater;
+        }
+
+        private Inflater inflater() {
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            inflater.reset();
+            return inflater;
+        }
+
+        private ByteBuffer scratch(int length) {
+            if (scratch == null || scratch.capacity() < length) {
+                scratch = ByteBuffer.allocate(Math.max(length, SCRATCH_CAPACITY));
+            }
+            scratch.clear().limit(length);
+            return scratch;
+        }
+
+        // буфер под редкий огромный кадр в пуле не держим
+        private void trim() {
+            if (scratch != null && scratch.capacity() > MAX_RETAINED_SCRATCH) {
+                scratch = null;
+            }
+        }
+
+        private void end() {
+            if (deflater != null) {
+                deflater.end();
+            }
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
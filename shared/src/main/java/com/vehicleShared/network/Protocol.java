@@ -0,0 +1,105 @@
+package com.vehicleShared.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Общие константы протокола и согласование формата при подключении.
+ * <p>
+ * Клиент первым кадром шлёт {@link #MAGIC}, список поддерживаемых версий и флаги
+ * возможностей, сервер отвечает тем же {@link #MAGIC}, выбранной версией и флагами,
+ * которые поддерживает сам. Клиент без согласования сразу шлёт сериализованный
+ * {@link Request} и обслуживается в старом формате.
+ */
+public final class Protocol {
+    public static final int MAX_FRAME_LENGTH = 1_000_000;
+    public static final int MAGIC = 0x56454843; // "VEHC"
+    public static final byte VERSION_SERIALIZATION = 0;
+    public static final byte VERSION_BINARY = 1;
+    public static final byte FEATURE_COMPRESSION = 1;
+    public static final int COMPRESSION_THRESHOLD = 8 * 1024;
+
+    private static final byte[] SUPPORTED = {VERSION_BINARY, VERSION_SERIALIZATION};
+    private static final byte SUPPORTED_FEATURES = FEATURE_COMPRESSION;
+
+    private Protocol() {
+    }
+
+    public static WireCodec codecFor(byte version) {
+        return version == VERSION_BINARY ? BinaryCodec.INSTANCE : SerializationCodec.INSTANCE;
+    }
+
+    public static WireCodec codecFor(byte version, byte features) {
+        WireCodec codec = codecFor(version);
+        if ((features & FEATURE_COMPRESSION) != 0) {
+            return new CompressingCodec(codec, COMPRESSION_THRESHOLD);
+        }
+        return codec;
+    }
+
+    public static boolean isHandshake(ByteBuffer body) {
+        return body.remaining() >= 5 && body.getInt(body.position()) == MAGIC;
+    }
+
+    public static void writeHello(WireBuffer out) {
+        out.putInt(MAGIC);
+        out.putByte(SUPPORTED.length);
+        for (byte version : SUPPORTED) {
+            out.putByte(version);
+        }
+        out.putByte(SUPPORTED_FEATURES);
+    }
+
+    /**
+     * Выбирает из приветствия клиента лучшую версию, которую знает и сервер.
+     */
+    public static byte chooseVersion(ByteBuffer hello) {
+        ByteBuffer in = hello.duplicate();
+        in.getInt();
+        int count = in.get();
+        byte chosen = VERSION_SERIALIZATION;
+        for (int i = 0; i < count && in.hasRemaining(); i++) {
+            byte offered = in.get();
+            if (offered == VERSION_BINARY) {
+                chosen = VERSION_BINARY;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Возможности, которые предложил клиент и поддерживает сервер.
+     */
+    public static byte chooseFeatures(ByteBuffer hello) {
+        ByteBuffer in = hello.duplicate();
+        in.getInt();
+        int count = in.get();
+        int featuresAt = in.position() + count;
+        if (count < 0 || featuresAt >= in.limit()) {
+            return 0;
+        }
+        return (byte) (in.get(featuresAt) & SUPPORTED_FEATURES);
+    }
+
+    public static void writeAccept(byte version, byte features, WireBuffer out) {
+        out.putInt(MAGIC);
+        out.putByte(version);
+        out.putByte(features);
+    }
+
+    /**
+     * @return выбранная сервером версия или -1, если ответ не похож на согласование
+     */
+    public static byte readAccept(ByteBuffer body) {
+        if (body.remaining() < 5 || body.getInt(body.position()) != MAGIC) {
+            return -1;
+        }
+        return body.get(body.position() + 4);
+    }
+
+    public static byte readAcceptedFeatures(ByteBuffer body) {
+        if (body.remaining() < 6) {
+            return 0;
+        }
+        return body.get(body.position() + 5);
+    }
+}
@@ -4,11 +4,16 @@ import com.vehicleShared.model.Vehicle;
 import java.io.Serializable;
 
 public class Request implements Serializable {
+    // значение из версии без correlationId, чтобы старые клиенты продолжали работать
+    private static final long serialVersionUID = -5098436959837720782L;
+    private long correlationId;
     private String command;
     private String argument;
     private Vehicle vehicle;
     private String login;
     private String password;
+    private String cursor;
+    private String sessionToken;
 
     public Request(String command, String argument, String login, String password) {
         this.command = command;
@@ -17,6 +22,14 @@ public class Request implements Serializable {
         this.password = password;
     }
 
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(long correlationId) {
+        this.correlationId = correlationId;
+    }
+
     public void setLogin(String login){
         this.login=login;
     }
@@ -45,8 +58,30 @@ public class Request implements Serializable {
         return password;
     }
 
+    /**
+     * Курсор страницы из предыдущего ответа; null — с начала.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Токен, выданный при входе; вместо пароля в каждой команде.
+     */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
     @Override
     public String toString() {
-        return "Request{command='" + command + "', argument='" + argument + "', vehicle=" + vehicle + ", login='" + login + "'}";
+        return "Request{correlationId=" + correlationId + ", command='" + command + "', argument='" + argument + "', vehicle=" + vehicle + ", login='" + login + "', cursor='" + cursor + "'}";
     }
 }
\ No newline at end of file
@@ -10,6 +10,9 @@ public class Response implements Serializable {
     private final boolean requiresVehicle;
     private final List<Serializable> data;
     private final Exception exception;
+    private long correlationId;
+    private String nextCursor;
+    private String sessionToken;
 
     public Response(boolean success, String message, boolean requiresVehicle, List<Serializable> data, Exception exception) {
         this.success = success;
@@ -47,13 +50,43 @@ public class Response implements Serializable {
         return exception;
     }
 
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(long correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Курсор следующей страницы; null, если страница последняя.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Токен сессии в ответе на login и register.
+     */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
     public boolean hasData() {
         return data != null && !data.isEmpty();
     }
 
     @Override
     public String toString() {
-        return "Response{success=" + success + ", message='" + message + "', requiresVehicle=" + requiresVehicle + ", dataSize=" + (data != null ? data.size() : 0) + ", exception=" + (exception != null ? exception.getClass().getSimpleName() : "null") + '}';
+        return "Response{correlationId=" + correlationId + ", success=" + success + ", message='" + message + "', requiresVehicle=" + requiresVehicle + ", dataSize=" + (data != null ? data.size() : 0) + ", exception=" + (exception != null ? exception.getClass().getSimpleName() : "null") + ", nextCursor='" + nextCursor + "'}";
     }
 
     public static Response success(String message) {
@@ -68,6 +101,21 @@ public class Response implements Serializable {
         return new Response(true, message, false, data, null);
     }
 
+    public static Response authorized(String message, String sessionToken) {
+        Response response = new Response(true, message, false);
+        response.setSessionToken(sessionToken);
+        return response;
+    }
+
+    /**
+     * Страница несёт только элементы: текст из них собирает тот, кому он нужен.
+     */
+    public static Response page(List<Serializable> items, String nextCursor) {
+        Response response = new Response(true, null, false, items, null);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+
     public static Response error(String message) {
         return new Response(false, message, false);
     }
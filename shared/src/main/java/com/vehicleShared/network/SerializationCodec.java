@@ -0,0 +1,62 @@
+package com.vehicleShared.network;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Старый формат на стандартной сериализации java, остаётся для клиентов без согласования.
+ */
+public class SerializationCodec implements WireCodec {
+    public static final SerializationCodec INSTANCE = new SerializationCodec();
+
+    @Override
+    public byte version() {
+        return Protocol.VERSION_SERIALIZATION;
+    }
+
+    @Override
+    public void writeRequest(Request request, WireBuffer out) throws IOException {
+        writeObject(request, out);
+    }
+
+    @Override
+    public Request readRequest(ByteBuffer in) throws IOException {
+        return readObject(in, Request.class);
+    }
+
+    @Override
+    public void writeResponse(Response response, WireBuffer out) throws IOException {
+        writeObject(response, out);
+    }
+
+    @Override
+    public Response readResponse(ByteBuffer in) throws IOException {
+        return readObject(in, Response.class);
+    }
+
+    static void writeObject(Object value, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(value);
+        oos.flush();
+    }
+
+    static <T> T readObject(ByteBuffer in, Class<T> type) throws IOException {
+        byte[] data;
+        int offset;
+        int length = in.remaining();
+        if (in.hasArray()) {
+            data = in.array();
+            offset = in.arrayOffset() + in.position();
+        } else {
+            data = new byte[length];
+            in.duplicate().get(data);
+            offset = 0;
+        }
+        in.position(in.limit());
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data, offset, length))) {
+            return type.cast(ois.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new StreamCorruptedException("неизвестный объект в кадре: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.vehicleShared.network;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Растущий буфер для сборки кадров протокола. Первые 4 байта кадра резервируются
+ * под длину и заполняются в {@link #finishFrame()}, поэтому готовый кадр не копируется.
+ */
+public class WireBuffer extends OutputStream {
+    private final boolean direct;
+    private ByteBuffer buffer;
+    private int frameStart = -1;
+
+    /**
+     * @param direct прямой буфер уходит в канал без промежуточного копирования внутри jdk,
+     *               такие буферы стоит переиспользовать, а не создавать на каждый кадр
+     */
+    public WireBuffer(int initialCapacity, boolean direct) {
+        this.direct = direct;
+        this.buffer = allocate(Math.max(initialCapacity, 64));
+    }
+
+    public WireBuffer(int initialCapacity) {
+        this(initialCapacity, false);
+    }
+
+    public WireBuffer() {
+        this(256);
+    }
+
+    public WireBuffer startFrame() {
+        ensure(4);
+        frameStart = buffer.position();
+        buffer.putInt(0);
+        return this;
+    }
+
+    /**
+     * Проставляет длину кадра и возвращает буфер, готовый к записи в канал.
+     */
+    public ByteBuffer finishFrame() {
+        if (frameStart < 0) {
+            throw new IllegalStateException("кадр не начат");
+        }
+        buffer.putInt(frameStart, buffer.position() - frameStart - 4);
+        frameStart = -1;
+        ByteBuffer frame = buffer.duplicate();
+        frame.flip();
+        return frame;
+    }
+
+    public WireBuffer clear() {
+        buffer.clear();
+        frameStart = -1;
+        return this;
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Отбрасывает всё записанное после указанной позиции.
+     */
+    public WireBuffer truncate(int position) {
+        buffer.position(position);
+        return this;
+    }
+
+    /**
+     * Вид на уже записанные байты без копирования; действителен до следующей записи.
+     */
+    public ByteBuffer view(int from, int to) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(to).position(from);
+        return view.slice();
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public WireBuffer putByte(int value) {
+        ensure(1);
+        buffer.put((byte) value);
+        return this;
+    }
+
+    public WireBuffer putBoolean(boolean value) {
+        return putByte(value ? 1 : 0);
+    }
+
+    public WireBuffer putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    public WireBuffer putLong(long value) {
+        ensure(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    public WireBuffer putFloat(float value) {
+        ensure(4);
+        buffer.putFloat(value);
+        return this;
+    }
+
+    public WireBuffer patchInt(int index, int value) {
+        buffer.putInt(index, value);
+        return this;
+    }
+
+    public WireBuffer putBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        buffer.put(bytes, offset, length);
+        return this;
+    }
+
+    public WireBuffer putBytes(ByteBuffer bytes) {
+        ensure(bytes.remaining());
+        buffer.put(bytes);
+        return this;
+    }
+
+    /**
+     * Строка как int-длина в байтах и UTF-8; null кодируется длиной -1.
+     */
+    public WireBuffer putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(int b) {
+        putByte(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        putBytes(b, off, len);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        int required = buffer.position() + bytes;
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+        ByteBuffer grown = allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
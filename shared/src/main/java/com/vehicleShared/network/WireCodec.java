@@ -0,0 +1,20 @@
+package com.vehicleShared.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Формат тела кадра. Длина кадра пишется снаружи, кодек отвечает только за содержимое.
+ */
+public interface WireCodec {
+
+    byte version();
+
+    void writeRequest(Request request, WireBuffer out) throws IOException;
+
+    Request readRequest(ByteBuffer in) throws IOException;
+
+    void writeResponse(Response response, WireBuffer out) throws IOException;
+
+    Response readResponse(ByteBuffer in) throws IOException;
+}